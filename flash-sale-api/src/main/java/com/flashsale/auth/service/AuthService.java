@@ -3,12 +3,12 @@ package com.flashsale.auth.service;
 import com.flashsale.auth.dto.LoginResponse;
 import com.flashsale.auth.entity.User;
 import com.flashsale.auth.repository.UserRepository;
+import com.flashsale.common.datasource.ReadReplica;
 import com.flashsale.common.exception.BusinessException;
 import com.flashsale.wallet.service.WalletService;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -20,7 +20,7 @@ public class AuthService {
     private final OtpService otpService;
     private final TokenService tokenService;
     private final UserRepository userRepository;
-    private final PasswordEncoder passwordEncoder;
+    private final PasswordHashingService passwordHashingService;
     private final WalletService walletService;
 
     // ======================== REGISTER ========================
@@ -32,7 +32,7 @@ public class AuthService {
             throw new BusinessException("An account with this identifier already exists.");
         }
 
-        String hashedPassword = passwordEncoder.encode(password);
+        String hashedPassword = passwordHashingService.encode(password);
         strategy.register(identifier, hashedPassword, nickname);
         otpService.sendOtp(identifier);
 
@@ -83,11 +83,13 @@ public class AuthService {
     public LoginResponse login(String identifier, String password) {
         AuthStrategy strategy = strategyFactory.resolve(identifier);
 
-        User user = strategy.findByIdentifier(identifier)
-                .orElseThrow(() -> new BusinessException(401, "Invalid credentials."));
+        User user = authenticate(strategy, identifier, password);
 
-        if (!passwordEncoder.matches(password, user.getPassword())) {
-            throw new BusinessException(401, "Invalid credentials.");
+        // Work factor was raised since this hash was made: upgrade it while we have the plaintext
+        if (passwordHashingService.needsRehash(user.getPassword())) {
+            String oldHash = user.getPassword();
+            passwordHashingService.rehashInBackground(password,
+                    newHash -> userRepository.updatePasswordIfUnchanged(user.getId(), oldHash, newHash));
         }
 
         if (!user.getVerified()) {
@@ -105,6 +107,27 @@ public class AuthService {
                 .build();
     }
 
+    /**
+     * The account if the password matches. Looked up on the replica first; a miss, an unverified
+     * account or a wrong password may just be replica lag behind a sign-up, verification or
+     * reset, so those are re-checked on the primary.
+     */
+    private User authenticate(AuthStrategy strategy, String identifier, String password) {
+        User user = ReadReplica.read(() -> strategy.findByIdentifier(identifier))
+                .filter(User::getVerified)
+                .or(() -> strategy.findByIdentifier(identifier))
+                .orElseThrow(() -> new BusinessException(401, "Invalid credentials."));
+        if (passwordHashingService.matches(password, user.getPassword())) {
+            return user;
+        }
+        User current = strategy.findByIdentifier(identifier).orElse(null);
+        if (current == null || current.getPassword().equals(user.getPassword())
+                || !passwordHashingService.matches(password, current.getPassword())) {
+            throw new BusinessException(401, "Invalid credentials.");
+        }
+        return current;
+    }
+
     // ======================== LOGOUT ========================
 
     public void logout(String token) {
@@ -134,7 +157,7 @@ public class AuthService {
 
         otpService.verifyOtp(identifier, otp);
 
-        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setPassword(passwordHashingService.encode(newPassword));
         user.setVerified(true);
         userRepository.save(user);
 
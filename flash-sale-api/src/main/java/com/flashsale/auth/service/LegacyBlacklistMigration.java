@@ -0,0 +1,125 @@
+package com.flashsale.auth.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the keys that logout wrote before auth:revoked existed into auth:revoked, so tokens
+ * logged out before the upgrade stay revoked until they expire. They come in two forms:
+ * <ul>
+ *   <li>auth:blacklist:{token}: the token is parsed for its revocation id and expiry.</li>
+ *   <li>auth:blacklist:{digest}, the token's SHA-256 (TokenCache#digest): those tokens predate
+ *       jti, so their revocation id is the first 72 bits of that same hash, and the key's TTL
+ *       ends at their expiry.</li>
+ * </ul>
+ * <p>
+ * Builds still running mid-rollout keep writing those keys, so every API node re-runs the move
+ * with each revocation rebuild until one token lifetime after the first node ran it (the cutoff
+ * is kept in Redis). By then every token revoked the old way has expired, and the full-keyspace
+ * SCAN stops.
+ */
+@Slf4j
+@Component
+public class LegacyBlacklistMigration {
+
+    static final String LEGACY_PREFIX = "auth:blacklist:";
+    static final String UNTIL_KEY = "auth:revoked:legacy-until";
+    private static final int SCAN_COUNT = 1000;
+    private static final int DIGEST_BYTES = 32;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TokenService tokenService;
+    private final TokenRevocationService tokenRevocationService;
+    private final Duration tokenLifetime;
+    private volatile boolean finished;
+
+    public LegacyBlacklistMigration(
+            RedisTemplate<String, Object> redisTemplate,
+            TokenService tokenService,
+            TokenRevocationService tokenRevocationService,
+            @Value("${app.jwt.expiration-hours}") long expirationHours
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.tokenService = tokenService;
+        this.tokenRevocationService = tokenRevocationService;
+        this.tokenLifetime = Duration.ofHours(expirationHours);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.jwt.revocation-rebuild-ms:300000}",
+            fixedDelayString = "${app.jwt.revocation-rebuild-ms:300000}")
+    public void migrate() {
+        if (finished) {
+            return;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            redisTemplate.opsForValue().setIfAbsent(UNTIL_KEY, String.valueOf(now + tokenLifetime.toMillis()));
+            Object until = redisTemplate.opsForValue().get(UNTIL_KEY);
+            if (until != null && Long.parseLong(until.toString()) <= now) {
+                finished = true;
+                return;
+            }
+            moveLegacyKeys();
+        } catch (DataAccessException e) {
+            // Retried with the next rebuild
+            log.error("Moving legacy auth:blacklist keys failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private void moveLegacyKeys() {
+        int moved = 0;
+        int dropped = 0;
+        ScanOptions options = ScanOptions.scanOptions().match(LEGACY_PREFIX + "*").count(SCAN_COUNT).build();
+        try (Cursor<String> keys = redisTemplate.scan(options)) {
+            while (keys.hasNext()) {
+                String key = keys.next();
+                String suffix = key.substring(LEGACY_PREFIX.length());
+                TokenService.Revocation revocation = suffix.indexOf('.') >= 0
+                        ? tokenService.revocationOf(suffix)
+                        : fromDigest(key, suffix);
+                if (revocation != null) {
+                    tokenRevocationService.revoke(revocation.revocationId(), revocation.expiresAtMillis());
+                    moved++;
+                } else {
+                    dropped++;
+                }
+                redisTemplate.delete(key);
+            }
+        }
+        if (moved + dropped > 0) {
+            log.info("Moved {} legacy auth:blacklist keys to {} ({} invalid or expired dropped)",
+                    moved, TokenRevocationService.REVOKED_KEY, dropped);
+        }
+    }
+
+    /**
+     * Null if the digest is malformed or the key has no TTL left.
+     */
+    private TokenService.Revocation fromDigest(String key, String digest) {
+        byte[] hash;
+        try {
+            hash = Base64.getUrlDecoder().decode(digest);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        Long ttlMillis = redisTemplate.getExpire(key, TimeUnit.MILLISECONDS);
+        if (hash.length != DIGEST_BYTES || ttlMillis == null || ttlMillis <= 0) {
+            return null;
+        }
+        return new TokenService.Revocation(TokenRevocationService.revocationId(hash),
+                System.currentTimeMillis() + ttlMillis);
+    }
+}
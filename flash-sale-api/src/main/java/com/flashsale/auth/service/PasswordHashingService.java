@@ -0,0 +1,148 @@
+package com.flashsale.auth.service;
+
+import com.flashsale.common.exception.BusinessException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs BCrypt on its own CPU-sized pool instead of Tomcat threads, so a login storm before a
+ * sale queues here rather than competing with purchases for request threads and CPU.
+ * <p>
+ * Bounded twice: a full queue rejects immediately, and a task that waited longer than
+ * max-queue-ms is dropped instead of hashed — both surface as 503 so clients back off.
+ */
+@Slf4j
+@Service
+public class PasswordHashingService {
+
+    private static final String OVERLOADED = "Too many sign-in requests right now — please retry shortly";
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final long maxQueueMillis;
+    private final Timer verifyTimer;
+    private final Timer encodeTimer;
+    private final Timer queueWaitTimer;
+    private final Counter rejected;
+
+    public PasswordHashingService(
+            PasswordEncoder passwordEncoder,
+            MeterRegistry meterRegistry,
+            @Value("${app.auth.hash-threads:0}") int threads,
+            @Value("${app.auth.hash-queue-capacity:256}") int queueCapacity,
+            @Value("${app.auth.hash-max-queue-ms:2000}") long maxQueueMillis
+    ) {
+        this.passwordEncoder = passwordEncoder;
+        this.maxQueueMillis = maxQueueMillis;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hash-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.verifyTimer = Timer.builder("auth.password.hash").tag("op", "verify").register(meterRegistry);
+        this.encodeTimer = Timer.builder("auth.password.hash").tag("op", "encode").register(meterRegistry);
+        this.queueWaitTimer = Timer.builder("auth.password.queue.wait").register(meterRegistry);
+        this.rejected = Counter.builder("auth.password.rejected").register(meterRegistry);
+        Gauge.builder("auth.password.queue.depth", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("auth.password.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+    }
+
+    public boolean matches(String rawPassword, String encodedPassword) {
+        return run(verifyTimer, () -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    public String encode(String rawPassword) {
+        return run(encodeTimer, () -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * True if the stored hash was made with a weaker work factor than the current one.
+     */
+    public boolean needsRehash(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    /**
+     * Re-hash in the background, when the pool has room; never delays or fails the caller.
+     */
+    public void rehashInBackground(String rawPassword, Consumer<String> onHashed) {
+        try {
+            executor.execute(() -> {
+                try {
+                    onHashed.accept(encodeTimer.record(() -> passwordEncoder.encode(rawPassword)));
+                } catch (RuntimeException e) {
+                    log.warn("Background password rehash failed: {}", e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            log.debug("Skipping password rehash: hashing pool is full");
+        }
+    }
+
+    private <T> T run(Timer timer, Callable<T> hash) {
+        long enqueuedAt = System.nanoTime();
+        Future<T> future;
+        try {
+            future = executor.submit(() -> {
+                long waitedNanos = System.nanoTime() - enqueuedAt;
+                queueWaitTimer.record(waitedNanos, TimeUnit.NANOSECONDS);
+                if (TimeUnit.NANOSECONDS.toMillis(waitedNanos) > maxQueueMillis) {
+                    // The caller has given up already; don't burn CPU on it
+                    throw new TimeoutException("queued " + TimeUnit.NANOSECONDS.toMillis(waitedNanos) + "ms");
+                }
+                return timer.recordCallable(hash);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            throw new BusinessException(503, OVERLOADED);
+        }
+
+        try {
+            // Queue budget plus generous room for the hash itself
+            return future.get(maxQueueMillis * 2, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(false);
+            rejected.increment();
+            throw new BusinessException(503, OVERLOADED);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof TimeoutException) {
+                rejected.increment();
+                throw new BusinessException(503, OVERLOADED);
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BusinessException(503, OVERLOADED);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdown();
+    }
+}
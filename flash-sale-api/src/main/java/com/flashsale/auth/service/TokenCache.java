@@ -0,0 +1,76 @@
+package com.flashsale.auth.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-JVM cache of tokens whose signature was already verified, keyed by token digest, so the
+ * authentication filter skips the jjwt parse and HMAC for tokens seen before. Entries expire
+ * with the token. Revocation is checked separately on every request (TokenRevocationService).
+ */
+@Component
+public class TokenCache {
+
+    record Verified(Long userId, String revocationId, long expiresAtMillis) {}
+
+    private final Cache<String, Verified> verified;
+
+    public TokenCache(@Value("${app.jwt.cache-max-size:500000}") long maxSize) {
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Verified>() {
+                    @Override
+                    public long expireAfterCreate(String key, Verified value, long currentTime) {
+                        long remainingMillis = value.expiresAtMillis() - System.currentTimeMillis();
+                        return TimeUnit.MILLISECONDS.toNanos(Math.max(remainingMillis, 0));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Verified value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Verified value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+
+    /**
+     * URL-safe SHA-256 of the token — fixed-size cache key instead of the whole JWT.
+     */
+    public static String digest(String token) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A previously verified, unexpired token; null if unknown.
+     */
+    Verified get(String digest) {
+        Verified entry = verified.getIfPresent(digest);
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry;
+    }
+
+    void put(String digest, Verified entry) {
+        verified.put(digest, entry);
+    }
+}
@@ -0,0 +1,174 @@
+package com.flashsale.auth.service;
+
+import com.flashsale.common.exception.RedisUnavailableException;
+import com.flashsale.common.redis.TypedRedis;
+import com.flashsale.common.util.BloomFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Revoked tokens, identified by a 12-char digest of their jti and kept in the Redis ZSET
+ * auth:revoked (score = token expiry). Each API node holds a Bloom filter of that set, so the
+ * common case — a token that was never revoked — is answered locally; only Bloom positives
+ * are confirmed against Redis. While Redis is unavailable those are treated as revoked: a
+ * rare false 401 rather than letting a revoked token through.
+ * <p>
+ * The filter is rebuilt from Redis periodically (dropping expired revocations and covering
+ * any missed pub/sub message) and updated in between through the auth:revoked channel.
+ */
+@Slf4j
+@Service
+public class TokenRevocationService implements MessageListener {
+
+    static final String REVOKED_KEY = "auth:revoked";
+    private static final byte[] REVOKED_KEY_BYTES = REVOKED_KEY.getBytes(StandardCharsets.UTF_8);
+    /** Payload: "{revocationId}:{expiresAtMillis}" */
+    public static final String REVOKED_CHANNEL = "auth:revoked";
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final Duration FALSE_POSITIVE_TTL = Duration.ofSeconds(30);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TypedRedis typedRedis;
+    private final long expectedRevocations;
+    private final AtomicReference<BloomFilter> filter = new AtomicReference<>();
+    // Filter being rebuilt, if any; revocations arriving meanwhile go into both
+    private final AtomicReference<BloomFilter> building = new AtomicReference<>();
+
+    // Confirmed either way by Redis, so repeated Bloom positives don't each cost a round trip
+    private final Cache<String, Boolean> confirmed = Caffeine.newBuilder()
+            .maximumSize(100_000)
+            .expireAfterWrite(FALSE_POSITIVE_TTL)
+            .build();
+
+    public TokenRevocationService(
+            RedisTemplate<String, Object> redisTemplate,
+            TypedRedis typedRedis,
+            @Value("${app.jwt.revocation-capacity:1000000}") long expectedRevocations
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.typedRedis = typedRedis;
+        this.expectedRevocations = expectedRevocations;
+        this.filter.set(new BloomFilter(expectedRevocations, FALSE_POSITIVE_RATE));
+    }
+
+    /**
+     * Short digest of a jti (or, for tokens without one, of the token itself).
+     * 72 bits: collisions are negligible at any realistic number of revocations.
+     */
+    public static String revocationId(String jtiOrToken) {
+        try {
+            return revocationId(MessageDigest.getInstance("SHA-256").digest(jtiOrToken.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The same, from the SHA-256 already computed.
+     */
+    static String revocationId(byte[] sha256) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(sha256, 9));
+    }
+
+    public boolean isRevoked(String revocationId) {
+        if (!filter.get().mightContain(revocationId)) {
+            return false;
+        }
+        Boolean known = confirmed.getIfPresent(revocationId);
+        if (known != null) {
+            return known;
+        }
+        Double expiresAt;
+        try {
+            expiresAt = typedRedis.score(REVOKED_KEY_BYTES, revocationId.getBytes(StandardCharsets.UTF_8));
+        } catch (RedisUnavailableException e) {
+            // Fail closed, uncached: only Bloom positives get here, and most of those are revoked
+            log.debug("Treating {} as revoked: Redis unavailable", revocationId);
+            return true;
+        }
+        boolean revoked = expiresAt != null && expiresAt > System.currentTimeMillis();
+        confirmed.put(revocationId, revoked);
+        return revoked;
+    }
+
+    public void revoke(String revocationId, long expiresAtMillis) {
+        if (expiresAtMillis <= System.currentTimeMillis()) {
+            return;
+        }
+        redisTemplate.opsForZSet().add(REVOKED_KEY, revocationId, expiresAtMillis);
+        redisTemplate.convertAndSend(REVOKED_CHANNEL, revocationId + ":" + expiresAtMillis);
+        markRevoked(revocationId);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String payload = new String(message.getBody(), StandardCharsets.UTF_8);
+        int sep = payload.lastIndexOf(':');
+        if (sep <= 0) {
+            log.warn("Ignoring malformed revocation message: {}", payload);
+            return;
+        }
+        markRevoked(payload.substring(0, sep));
+    }
+
+    /**
+     * Replace the filter with one built from the unexpired revocations in Redis, and prune the
+     * expired ones there.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(initialDelayString = "${app.jwt.revocation-rebuild-ms:300000}",
+            fixedDelayString = "${app.jwt.revocation-rebuild-ms:300000}")
+    public void rebuild() {
+        long now = System.currentTimeMillis();
+        redisTemplate.opsForZSet().removeRangeByScore(REVOKED_KEY, Double.NEGATIVE_INFINITY, now);
+        Long count = redisTemplate.opsForZSet().zCard(REVOKED_KEY);
+
+        BloomFilter rebuilt = new BloomFilter(Math.max(expectedRevocations, count == null ? 0 : count * 2),
+                FALSE_POSITIVE_RATE);
+        building.set(rebuilt);
+        Set<Object> live = redisTemplate.opsForZSet().rangeByScore(REVOKED_KEY, now, Double.POSITIVE_INFINITY);
+        if (live != null) {
+            live.forEach(id -> rebuilt.add(id.toString()));
+        }
+        filter.set(rebuilt);
+        building.set(null);
+        log.debug("Revocation filter rebuilt with {} entries", live == null ? 0 : live.size());
+    }
+
+    /**
+     * A rebuild can publish its filter and clear {@code building} between our two reads, after
+     * we added to the filter it replaced; so re-read the filter until it is one we added to. A
+     * rebuild starting after that reads this revocation from Redis.
+     */
+    private void markRevoked(String revocationId) {
+        BloomFilter current = filter.get();
+        current.add(revocationId);
+        BloomFilter next = building.get();
+        if (next != null) {
+            next.add(revocationId);
+        }
+        for (BloomFilter latest = filter.get(); latest != current; latest = filter.get()) {
+            latest.add(revocationId);
+            current = latest;
+        }
+        confirmed.put(revocationId, Boolean.TRUE);
+    }
+}
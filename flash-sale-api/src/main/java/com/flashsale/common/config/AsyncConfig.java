@@ -7,15 +7,17 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
-import java.util.concurrent.Executor;
 import java.util.concurrent.ThreadPoolExecutor;
 
 @Slf4j
 @Configuration
 public class AsyncConfig implements AsyncConfigurer {
 
+    /**
+     * Queue depth and thread usage are exported as executor.* metrics (name=orderPersistence).
+     */
     @Bean(name = "orderPersistenceExecutor")
-    public Executor orderPersistenceExecutor() {
+    public ThreadPoolTaskExecutor orderPersistenceExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
         executor.setCorePoolSize(8);
         executor.setMaxPoolSize(32);
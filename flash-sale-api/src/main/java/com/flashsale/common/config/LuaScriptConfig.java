@@ -1,19 +0,0 @@
-package com.flashsale.common.config;
-
-import org.springframework.context.annotation.Bean;
-import org.springframework.context.annotation.Configuration;
-import org.springframework.core.io.ClassPathResource;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
-import org.springframework.scripting.support.ResourceScriptSource;
-
-@Configuration
-public class LuaScriptConfig {
-
-    @Bean
-    public DefaultRedisScript<Long> flashSaleLuaScript() {
-        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
-        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("scripts/flash_sale.lua")));
-        script.setResultType(Long.class);
-        return script;
-    }
-}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flashsale.auth.service.JwtAuthenticationFilter;
 import com.flashsale.common.dto.ApiResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -24,9 +25,12 @@ public class SecurityConfig {
     private final JwtAuthenticationFilter jwtAuthenticationFilter;
     private final ObjectMapper objectMapper;
 
+    /**
+     * Raising the strength upgrades existing hashes on their next login (see AuthService#login).
+     */
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder();
+    public PasswordEncoder passwordEncoder(@Value("${app.auth.bcrypt-strength:10}") int strength) {
+        return new BCryptPasswordEncoder(strength);
     }
 
     @Bean
@@ -53,8 +57,11 @@ public class SecurityConfig {
                         // Auth endpoints (public)
                         .requestMatchers("/api/v1/auth/**").permitAll()
 
+                        // Health probe and Prometheus scrape, served only on management.server.port
+                        .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
+
                         // Flash sale browsing (public)
-                        .requestMatchers(HttpMethod.GET, "/api/v1/flash-sale/items").permitAll()
+                        .requestMatchers(HttpMethod.GET, "/api/v1/flash-sale/items", "/api/v1/flash-sale/items/**").permitAll()
 
                         // Everything else requires JWT
                         .anyRequest().authenticated()
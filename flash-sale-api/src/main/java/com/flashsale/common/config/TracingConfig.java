@@ -0,0 +1,68 @@
+package com.flashsale.common.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.tracing.HeadTailSampler;
+import com.flashsale.common.tracing.JsonLinesSpanExporter;
+import com.flashsale.common.tracing.TailSamplingSpanProcessor;
+import io.lettuce.core.tracing.MicrometerTracing;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.autoconfigure.tracing.ConditionalOnEnabledTracing;
+import org.springframework.boot.actuate.autoconfigure.tracing.SpanExporters;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.ClientResourcesBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+/**
+ * OpenTelemetry tracing on top of Spring Boot's setup (HTTP server spans, OTLP export when
+ * management.otlp.tracing.endpoint is set): head ratio sampling plus tail sampling of slow or
+ * failed traces, a span per Redis command, and an optional JSON-lines file exporter.
+ * JDBC spans come from datasource-micrometer (jdbc.* properties).
+ */
+@Configuration
+@ConditionalOnEnabledTracing
+public class TracingConfig {
+
+    @Bean
+    public Sampler otelSampler(@Value("${management.tracing.sampling.probability:0.1}") double probability,
+                               @Value("${app.tracing.tail.enabled:true}") boolean tailEnabled) {
+        return new HeadTailSampler(probability, tailEnabled);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.tail.enabled", havingValue = "true", matchIfMissing = true)
+    public TailSamplingSpanProcessor tailSamplingSpanProcessor(
+            SpanExporters spanExporters,
+            MeterRegistry meterRegistry,
+            @Value("${app.tracing.tail.slow-threshold:500ms}") Duration slowThreshold,
+            @Value("${app.tracing.tail.window:30s}") Duration window,
+            @Value("${app.tracing.tail.max-traces:20000}") int maxTraces,
+            @Value("${app.tracing.tail.max-spans-per-trace:128}") int maxSpansPerTrace
+    ) {
+        return new TailSamplingSpanProcessor(SpanExporter.composite(spanExporters.list()), slowThreshold, window,
+                maxTraces, maxSpansPerTrace, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.tracing.file")
+    public JsonLinesSpanExporter jsonLinesSpanExporter(@Value("${app.tracing.file}") Path file,
+                                                       ObjectMapper objectMapper) {
+        return new JsonLinesSpanExporter(file, objectMapper);
+    }
+
+    /**
+     * Lettuce reports every command as an observation, a child of the current span.
+     */
+    @Bean
+    public ClientResourcesBuilderCustomizer lettuceTracing(ObservationRegistry observationRegistry,
+                                                           @Value("${spring.application.name}") String serviceName) {
+        return builder -> builder.tracing(new MicrometerTracing(observationRegistry, serviceName + "-redis"));
+    }
+}
@@ -1,22 +1,95 @@
 package com.flashsale.common.exception;
 
 import com.flashsale.common.dto.ApiResponse;
+import com.flashsale.flashsale.exception.PurchaseRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
 @Slf4j
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
+    private static final long REJECTION_LOG_INTERVAL_MILLIS = 10_000;
+
+    private final Map<PurchaseRejectedException.Reason, Counter> rejections =
+            new EnumMap<>(PurchaseRejectedException.Reason.class);
+    private final AtomicLong lastRejectionLog = new AtomicLong();
+    private final AtomicLong lastUnavailableLog = new AtomicLong();
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        for (PurchaseRejectedException.Reason reason : PurchaseRejectedException.Reason.values()) {
+            rejections.put(reason, Counter.builder("purchase.rejected")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Expected purchase outcomes: counted, written from the pre-encoded body, and logged as a
+     * summary at most every REJECTION_LOG_INTERVAL_MILLIS rather than once per request.
+     */
+    @ExceptionHandler(PurchaseRejectedException.class)
+    public ResponseEntity<byte[]> handlePurchaseRejected(PurchaseRejectedException ex) {
+        rejections.get(ex.getReason()).increment();
+
+        long now = System.currentTimeMillis();
+        long last = lastRejectionLog.get();
+        if (now - last >= REJECTION_LOG_INTERVAL_MILLIS && lastRejectionLog.compareAndSet(last, now)) {
+            StringBuilder totals = new StringBuilder();
+            rejections.forEach((reason, counter) -> {
+                if (counter.count() > 0) {
+                    totals.append(' ').append(reason.name().toLowerCase()).append('=').append((long) counter.count());
+                }
+            });
+            log.info("Purchase rejections so far:{}", totals);
+        }
+
+        return ResponseEntity
+                .status(HttpStatus.BAD_REQUEST)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(ex.getBody());
+    }
+
+    /**
+     * Redis is out or overloaded (see RedisGuard). While the breaker is open this is every
+     * Redis-backed request, so it is logged at most every REJECTION_LOG_INTERVAL_MILLIS; the
+     * redis.guard.* meters count them all.
+     */
+    @ExceptionHandler(RedisUnavailableException.class)
+    public ResponseEntity<ApiResponse<Void>> handleRedisUnavailable(RedisUnavailableException ex) {
+        long now = System.currentTimeMillis();
+        long last = lastUnavailableLog.get();
+        if (now - last >= REJECTION_LOG_INTERVAL_MILLIS && lastUnavailableLog.compareAndSet(last, now)) {
+            log.warn("Redis unavailable ({}): {}", ex.getReason().name().toLowerCase(),
+                    ex.getCause() != null ? ex.getCause().getMessage() : "failing fast");
+        }
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ApiResponse.error(ex.getCode(), ex.getMessage()));
+    }
+
     @ExceptionHandler(BusinessException.class)
     public ResponseEntity<ApiResponse<Void>> handleBusiness(BusinessException ex) {
         log.warn("Business error: {}", ex.getMessage());
+        HttpStatus status = ex.getCode() == 503 ? HttpStatus.SERVICE_UNAVAILABLE
+                : ex.getCode() >= 500 ? HttpStatus.INTERNAL_SERVER_ERROR
+                : ex.getCode() == 404 ? HttpStatus.NOT_FOUND
+                : HttpStatus.BAD_REQUEST;
         return ResponseEntity
-                .status(ex.getCode() >= 500 ? HttpStatus.INTERNAL_SERVER_ERROR : HttpStatus.BAD_REQUEST)
+                .status(status)
                 .body(ApiResponse.error(ex.getCode(), ex.getMessage()));
     }
 
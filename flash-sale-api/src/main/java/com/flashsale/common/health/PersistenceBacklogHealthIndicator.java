@@ -0,0 +1,49 @@
+package com.flashsale.common.health;
+
+import com.flashsale.order.service.PersistenceLagTracker;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Orders waiting in orderPersistenceExecutor. When the queue fills, CallerRunsPolicy makes
+ * request threads persist orders themselves, so DEGRADED is reported well before that.
+ */
+@Component("persistenceBacklog")
+public class PersistenceBacklogHealthIndicator implements HealthIndicator {
+
+    private static final Status DEGRADED = new Status("DEGRADED");
+
+    private final ThreadPoolTaskExecutor executor;
+    private final PersistenceLagTracker persistenceLagTracker;
+    private final double warnRatio;
+
+    public PersistenceBacklogHealthIndicator(
+            @Qualifier("orderPersistenceExecutor") ThreadPoolTaskExecutor executor,
+            PersistenceLagTracker persistenceLagTracker,
+            @Value("${app.health.persistence-backlog-warn-ratio:0.5}") double warnRatio
+    ) {
+        this.executor = executor;
+        this.persistenceLagTracker = persistenceLagTracker;
+        this.warnRatio = warnRatio;
+    }
+
+    @Override
+    public Health health() {
+        int queued = executor.getQueueSize();
+        int capacity = executor.getQueueCapacity();
+
+        Health.Builder health = queued > capacity * warnRatio ? Health.status(DEGRADED) : Health.up();
+        return health
+                .withDetail("queued", queued)
+                .withDetail("capacity", capacity)
+                .withDetail("activeThreads", executor.getActiveCount())
+                .withDetail("inFlightOrders", persistenceLagTracker.inFlight())
+                .withDetail("oldestPendingMillis", persistenceLagTracker.oldestPendingNanos() / 1_000_000)
+                .build();
+    }
+}
@@ -0,0 +1,52 @@
+package com.flashsale.common.health;
+
+import com.flashsale.common.redis.RedisGuard;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round-trip time of a PING. Every purchase makes several Redis calls, so a slow Redis is
+ * reported as DEGRADED before it shows up as failures. The PING bypasses RedisGuard, so it
+ * keeps measuring while the breaker is open; the breaker state is reported alongside.
+ */
+@Component("redisLatency")
+public class RedisLatencyHealthIndicator implements HealthIndicator {
+
+    private static final Status DEGRADED = new Status("DEGRADED");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final RedisGuard redisGuard;
+    private final long warnMillis;
+
+    public RedisLatencyHealthIndicator(
+            RedisTemplate<String, Object> redisTemplate,
+            RedisGuard redisGuard,
+            @Value("${app.health.redis-latency-warn-ms:50}") long warnMillis
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.redisGuard = redisGuard;
+        this.warnMillis = warnMillis;
+    }
+
+    @Override
+    public Health health() {
+        long start = System.nanoTime();
+        redisTemplate.execute((RedisCallback<String>) connection -> connection.ping());
+        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        Health.Builder health = latencyMicros > warnMillis * 1000 ? Health.status(DEGRADED) : Health.up();
+        return health
+                .withDetail("latencyMicros", latencyMicros)
+                .withDetail("warnMillis", warnMillis)
+                .withDetail("breaker", redisGuard.state())
+                .withDetail("readTimeoutMillis", TimeUnit.NANOSECONDS.toMillis(redisGuard.readTimeoutNanos()))
+                .build();
+    }
+}
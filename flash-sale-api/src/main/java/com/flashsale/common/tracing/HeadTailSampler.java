@@ -0,0 +1,51 @@
+package com.flashsale.common.tracing;
+
+import io.opentelemetry.api.common.Attributes;
+import io.opentelemetry.api.trace.Span;
+import io.opentelemetry.api.trace.SpanContext;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.trace.data.LinkData;
+import io.opentelemetry.sdk.trace.samplers.Sampler;
+import io.opentelemetry.sdk.trace.samplers.SamplingDecision;
+import io.opentelemetry.sdk.trace.samplers.SamplingResult;
+
+import java.util.List;
+
+/**
+ * Head sampling by trace id ratio, following the parent's decision below the root. With tail
+ * sampling on, traces the head ratio skips are still recorded (RECORD_ONLY: not exported, not
+ * flagged as sampled downstream) so {@link TailSamplingSpanProcessor} can keep the slow ones.
+ */
+public final class HeadTailSampler implements Sampler {
+
+    private final Sampler head;
+    private final boolean recordUnsampled;
+
+    public HeadTailSampler(double probability, boolean recordUnsampled) {
+        this.head = Sampler.traceIdRatioBased(probability);
+        this.recordUnsampled = recordUnsampled;
+    }
+
+    @Override
+    public SamplingResult shouldSample(Context parentContext, String traceId, String name, SpanKind spanKind,
+                                       Attributes attributes, List<LinkData> parentLinks) {
+        SpanContext parent = Span.fromContext(parentContext).getSpanContext();
+        if (parent.isValid()) {
+            if (parent.isSampled()) {
+                return SamplingResult.recordAndSample();
+            }
+            return recordUnsampled ? SamplingResult.recordOnly() : SamplingResult.drop();
+        }
+        SamplingResult result = head.shouldSample(parentContext, traceId, name, spanKind, attributes, parentLinks);
+        if (result.getDecision() == SamplingDecision.RECORD_AND_SAMPLE || !recordUnsampled) {
+            return result;
+        }
+        return SamplingResult.recordOnly();
+    }
+
+    @Override
+    public String getDescription() {
+        return "HeadTailSampler{head=" + head.getDescription() + ", recordUnsampled=" + recordUnsampled + "}";
+    }
+}
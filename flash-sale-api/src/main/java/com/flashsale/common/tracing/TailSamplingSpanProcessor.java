@@ -0,0 +1,140 @@
+package com.flashsale.common.tracing;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.sdk.common.CompletableResultCode;
+import io.opentelemetry.sdk.trace.ReadWriteSpan;
+import io.opentelemetry.sdk.trace.ReadableSpan;
+import io.opentelemetry.sdk.trace.SpanProcessor;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.BatchSpanProcessor;
+import io.opentelemetry.sdk.trace.export.SpanExporter;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Tail sampling for the traces {@link HeadTailSampler} recorded but did not sample: their spans
+ * are held per trace for {@code window}, and the whole trace is exported as soon as one span
+ * takes at least {@code slowThreshold} or ends in error — later spans of it (e.g. the async
+ * order persistence) go straight out. Everything else is dropped when the window passes.
+ * Head-sampled spans are left to the regular batch processor.
+ * <p>
+ * Memory is bounded by {@code maxTraces} and {@code maxSpansPerTrace}; under more load than
+ * that, the oldest pending traces are evicted and only their later spans can still be kept.
+ */
+public final class TailSamplingSpanProcessor implements SpanProcessor {
+
+    private final long slowThresholdNanos;
+    private final int maxSpansPerTrace;
+    private final Cache<String, PendingTrace> pending;
+    private final SpanProcessor export;
+    private final Counter keptTraces;
+
+    public TailSamplingSpanProcessor(SpanExporter exporter, Duration slowThreshold, Duration window, int maxTraces,
+                                     int maxSpansPerTrace, MeterRegistry meterRegistry) {
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.maxSpansPerTrace = maxSpansPerTrace;
+        this.pending = Caffeine.newBuilder()
+                .maximumSize(maxTraces)
+                .expireAfterWrite(window)
+                .build();
+        this.export = BatchSpanProcessor.builder(new SharedExporter(exporter)).setExportUnsampledSpans(true).build();
+        this.keptTraces = Counter.builder("tracing.tail.kept")
+                .description("Traces exported by tail sampling (slow or failed)")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void onStart(Context parentContext, ReadWriteSpan span) {
+    }
+
+    @Override
+    public boolean isStartRequired() {
+        return false;
+    }
+
+    @Override
+    public void onEnd(ReadableSpan span) {
+        if (span.getSpanContext().isSampled()) {
+            return;
+        }
+        boolean keep = span.getLatencyNanos() >= slowThresholdNanos
+                || span.toSpanData().getStatus().getStatusCode() == StatusCode.ERROR;
+        PendingTrace trace = pending.get(span.getSpanContext().getTraceId(), traceId -> new PendingTrace());
+        for (ReadableSpan released : trace.add(span, keep)) {
+            export.onEnd(released);
+        }
+    }
+
+    @Override
+    public boolean isEndRequired() {
+        return true;
+    }
+
+    @Override
+    public CompletableResultCode forceFlush() {
+        return export.forceFlush();
+    }
+
+    @Override
+    public CompletableResultCode shutdown() {
+        pending.invalidateAll();
+        return export.shutdown();
+    }
+
+    /**
+     * The exporters also belong to the regular batch processor, which shuts them down.
+     */
+    private record SharedExporter(SpanExporter delegate) implements SpanExporter {
+
+        @Override
+        public CompletableResultCode export(Collection<SpanData> spans) {
+            return delegate.export(spans);
+        }
+
+        @Override
+        public CompletableResultCode flush() {
+            return delegate.flush();
+        }
+
+        @Override
+        public CompletableResultCode shutdown() {
+            return delegate.flush();
+        }
+    }
+
+    private final class PendingTrace {
+
+        private List<ReadableSpan> spans = new ArrayList<>();
+        private boolean kept;
+
+        /**
+         * Spans to export now: none while the trace is undecided, everything held so far
+         * when it is kept, and each later span on its own.
+         */
+        synchronized List<ReadableSpan> add(ReadableSpan span, boolean keep) {
+            if (kept) {
+                return List.of(span);
+            }
+            if (keep) {
+                kept = true;
+                keptTraces.increment();
+                List<ReadableSpan> released = spans;
+                released.add(span);
+                spans = null;
+                return released;
+            }
+            if (spans.size() < maxSpansPerTrace) {
+                spans.add(span);
+            }
+            return List.of();
+        }
+    }
+}
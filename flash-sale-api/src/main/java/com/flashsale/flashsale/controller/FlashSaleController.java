@@ -1,6 +1,7 @@
 package com.flashsale.flashsale.controller;
 
 import com.flashsale.common.dto.ApiResponse;
+import com.flashsale.flashsale.dto.FlashSaleItemPageResponse;
 import com.flashsale.flashsale.dto.FlashSaleItemResponse;
 import com.flashsale.flashsale.dto.PurchaseRequest;
 import com.flashsale.flashsale.service.FlashSaleService;
@@ -11,7 +12,7 @@ import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.math.BigDecimal;
 import java.util.Map;
 
 @Tag(name = "Flash Sale", description = "Flash sale browsing and purchase")
@@ -22,19 +23,33 @@ public class FlashSaleController {
 
     private final FlashSaleService flashSaleService;
 
-    @Operation(summary = "Get all flash sale items active right now")
+    @Operation(summary = "Get flash sale items active right now (cursor-paginated; sort: default, price_asc, price_desc, discount)")
     @GetMapping("/items")
-    public ApiResponse<List<FlashSaleItemResponse>> getActiveItems() {
-        List<FlashSaleItemResponse> items = flashSaleService.getActiveFlashSales();
-        return ApiResponse.success(items);
+    public ApiResponse<FlashSaleItemPageResponse> getActiveItems(
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) BigDecimal minPrice,
+            @RequestParam(required = false) BigDecimal maxPrice,
+            @RequestParam(defaultValue = "default") String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int size) {
+        FlashSaleItemPageResponse page = flashSaleService.getActiveFlashSales(category, minPrice, maxPrice, sort, cursor, size);
+        return ApiResponse.success(page);
     }
 
-    @Operation(summary = "Purchase a flash sale item (requires JWT)")
+    @Operation(summary = "Get a single active flash sale item")
+    @GetMapping("/items/{flashSaleProductId}")
+    public ApiResponse<FlashSaleItemResponse> getItem(@PathVariable Long flashSaleProductId) {
+        return ApiResponse.success(flashSaleService.getFlashSaleItem(flashSaleProductId));
+    }
+
+    @Operation(summary = "Purchase a flash sale item (requires JWT). Retries with the same Idempotency-Key "
+            + "get the original outcome back")
     @PostMapping("/purchase")
     public ApiResponse<Map<String, String>> purchase(@Valid @RequestBody PurchaseRequest request,
+                                                     @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
                                                      Authentication authentication) {
         Long userId = (Long) authentication.getPrincipal();
-        String orderNo = flashSaleService.attemptPurchase(userId, request.getFlashSaleProductId());
+        String orderNo = flashSaleService.attemptPurchase(userId, request.getFlashSaleProductId(), idempotencyKey);
         return ApiResponse.success("Purchase successful", Map.of("orderNo", orderNo));
     }
 }
@@ -0,0 +1,17 @@
+package com.flashsale.flashsale.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.List;
+
+@Getter
+@AllArgsConstructor
+@Builder
+public class FlashSaleItemPageResponse {
+
+    private List<FlashSaleItemResponse> items;
+    /** Pass back as ?cursor= for the next page; null on the last page */
+    private String nextCursor;
+}
@@ -15,6 +15,7 @@ public class FlashSaleItemResponse {
     private Long flashSaleProductId;
     private Long productId;
     private String productName;
+    private String category;
     private BigDecimal originalPrice;
     private BigDecimal salePrice;
     private String flashSaleName;
@@ -1,5 +1,6 @@
 package com.flashsale.flashsale.event;
 
+import io.micrometer.tracing.TraceContext;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
@@ -12,12 +13,25 @@ public class PurchaseEvent extends ApplicationEvent {
     private final Long flashSaleProductId;
     private final BigDecimal salePrice;
     private final String orderNo;
+    /** Idempotency-Key of the purchase, or null; its outcome is marked persisted after the commit */
+    private final String idempotencyKey;
+    /** System.nanoTime when the purchase script succeeded */
+    private final long acceptedAtNanos;
+    /** PersistenceLagTracker ticket */
+    private final long lagTicket;
+    /** Span context of the purchase, parent of the persistence spans (null if untraced) */
+    private final TraceContext traceContext;
 
-    public PurchaseEvent(Object source, Long userId, Long flashSaleProductId, BigDecimal salePrice, String orderNo) {
+    public PurchaseEvent(Object source, Long userId, Long flashSaleProductId, BigDecimal salePrice, String orderNo,
+                         String idempotencyKey, long acceptedAtNanos, long lagTicket, TraceContext traceContext) {
         super(source);
         this.userId = userId;
         this.flashSaleProductId = flashSaleProductId;
         this.salePrice = salePrice;
         this.orderNo = orderNo;
+        this.idempotencyKey = idempotencyKey;
+        this.acceptedAtNanos = acceptedAtNanos;
+        this.lagTicket = lagTicket;
+        this.traceContext = traceContext;
     }
 }
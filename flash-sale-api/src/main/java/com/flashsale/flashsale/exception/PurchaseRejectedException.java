@@ -0,0 +1,87 @@
+package com.flashsale.flashsale.exception;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.common.dto.ApiResponse;
+import com.flashsale.common.exception.BusinessException;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * An expected purchase rejection (sold out, already bought, ...). After sell-out these are
+ * most of the traffic, so each reason is a single shared, stackless instance whose JSON body
+ * is encoded once; GlobalExceptionHandler writes those bytes as-is.
+ */
+public final class PurchaseRejectedException extends BusinessException {
+
+    public enum Reason {
+        PRICE_NOT_FOUND(-1, "Item price not found — sale may not be active"),
+        BALANCE_NOT_LOADED(-2, "Balance not loaded — please try again"),
+        INSUFFICIENT_BALANCE(-3, "Insufficient balance"),
+        ALREADY_PURCHASED(-4, "You have already purchased this item today"),
+        SOLD_OUT(-5, "Item is sold out"),
+        IDEMPOTENCY_KEY_REUSED(-6, "Idempotency-Key was already used for a different item"),
+        NOT_ACTIVE(0, "Flash sale not found or not active"),
+        NOT_STARTED(0, "Flash sale has not started yet"),
+        ENDED(0, "Flash sale has already ended");
+
+        /** fs_purchase_v1 result code, 0 for rejections decided before the script */
+        private final int scriptCode;
+        private final String message;
+
+        Reason(int scriptCode, String message) {
+            this.scriptCode = scriptCode;
+            this.message = message;
+        }
+    }
+
+    private static final Map<Reason, PurchaseRejectedException> INSTANCES = new EnumMap<>(Reason.class);
+
+    static {
+        ObjectMapper mapper = new ObjectMapper();
+        for (Reason reason : Reason.values()) {
+            INSTANCES.put(reason, new PurchaseRejectedException(reason, mapper));
+        }
+    }
+
+    private final Reason reason;
+    private final byte[] body;
+
+    private PurchaseRejectedException(Reason reason, ObjectMapper mapper) {
+        super(400, reason.message, false);
+        this.reason = reason;
+        try {
+            this.body = mapper.writeValueAsBytes(ApiResponse.error(400, reason.message));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static PurchaseRejectedException of(Reason reason) {
+        return INSTANCES.get(reason);
+    }
+
+    /**
+     * The rejection for a negative fs_purchase_v1 result code, or null if the code isn't one.
+     */
+    public static PurchaseRejectedException forScriptCode(long scriptCode) {
+        for (Reason reason : Reason.values()) {
+            if (reason.scriptCode == scriptCode && scriptCode < 0) {
+                return INSTANCES.get(reason);
+            }
+        }
+        return null;
+    }
+
+    public Reason getReason() {
+        return reason;
+    }
+
+    /**
+     * The encoded ApiResponse; shared, do not modify.
+     */
+    public byte[] getBody() {
+        return body;
+    }
+}
@@ -0,0 +1,200 @@
+package com.flashsale.flashsale.service;
+
+import com.flashsale.common.exception.BusinessException;
+import com.flashsale.flashsale.service.FlashSaleCacheService.CachedItem;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+
+/**
+ * Immutable search index over one catalog version: for every category (and for all items),
+ * the items pre-sorted in each {@link SortOrder}. A page is a binary search to the cursor
+ * plus a short scan — nothing is re-sorted or re-serialized per request.
+ * <p>
+ * A price range is cheap only under the price orders, where the scan stops at the far bound.
+ * Under DEFAULT and DISCOUNT, items out of range are skipped one by one: a page costs about
+ * size / (share of the category in range) steps, up to the whole category for a range that
+ * matches little. Catalogs hold hundreds to a few thousand items, so that stays in microseconds.
+ */
+final class FlashSaleItemIndex {
+
+    private static final String ALL = "";
+
+    /**
+     * Orders are total: ties are broken by flashSaleProductId, which keeps keyset cursors stable.
+     */
+    enum SortOrder {
+        DEFAULT(CachedItem::flashSaleId, false),
+        PRICE_ASC(CachedItem::salePriceCents, false),
+        PRICE_DESC(CachedItem::salePriceCents, true),
+        DISCOUNT(FlashSaleItemIndex::discountBasisPoints, true);
+
+        private final ToLongFunction<CachedItem> key;
+        private final boolean descending;
+
+        SortOrder(ToLongFunction<CachedItem> key, boolean descending) {
+            this.key = key;
+            this.descending = descending;
+        }
+
+        static SortOrder parse(String value) {
+            try {
+                return SortOrder.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new BusinessException("Unknown sort: " + value);
+            }
+        }
+
+        long keyOf(CachedItem item) {
+            return key.applyAsLong(item);
+        }
+
+        int compare(long keyA, long idA, long keyB, long idB) {
+            int byKey = descending ? Long.compare(keyB, keyA) : Long.compare(keyA, keyB);
+            return byKey != 0 ? byKey : Long.compare(idA, idB);
+        }
+
+        Comparator<CachedItem> comparator() {
+            return (a, b) -> compare(keyOf(a), a.flashSaleProductId(), keyOf(b), b.flashSaleProductId());
+        }
+    }
+
+    /**
+     * Position after the last item of the previous page: the sort it was taken in, its sort key
+     * and id. A key only means something in its own sort, so a cursor is rejected under another.
+     */
+    record Cursor(SortOrder order, long key, long flashSaleProductId) {
+
+        static Cursor decode(String token, SortOrder expected) {
+            Cursor cursor;
+            try {
+                String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+                String[] parts = raw.split("\\.", 3);
+                cursor = new Cursor(SortOrder.valueOf(parts[0]), Long.parseLong(parts[1]), Long.parseLong(parts[2]));
+            } catch (RuntimeException e) {
+                throw new BusinessException("Invalid cursor");
+            }
+            if (cursor.order() != expected) {
+                throw new BusinessException("Invalid cursor");
+            }
+            return cursor;
+        }
+
+        String encode() {
+            return Base64.getUrlEncoder().withoutPadding()
+                    .encodeToString((order.name() + "." + key + "." + flashSaleProductId).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    record Page(List<CachedItem> items, String nextCursor) {}
+
+    private final long version;
+    private final Map<String, Map<SortOrder, List<CachedItem>>> byCategory;
+
+    private FlashSaleItemIndex(long version, Map<String, Map<SortOrder, List<CachedItem>>> byCategory) {
+        this.version = version;
+        this.byCategory = byCategory;
+    }
+
+    static FlashSaleItemIndex build(long version, List<CachedItem> items) {
+        Map<String, List<CachedItem>> grouped = new HashMap<>();
+        grouped.put(ALL, items);
+        for (CachedItem item : items) {
+            if (item.category() != null) {
+                grouped.computeIfAbsent(normalize(item.category()), c -> new ArrayList<>()).add(item);
+            }
+        }
+
+        Map<String, Map<SortOrder, List<CachedItem>>> byCategory = new HashMap<>();
+        grouped.forEach((category, group) -> {
+            Map<SortOrder, List<CachedItem>> orders = new EnumMap<>(SortOrder.class);
+            for (SortOrder order : SortOrder.values()) {
+                List<CachedItem> sorted = new ArrayList<>(group);
+                sorted.sort(order.comparator());
+                orders.put(order, List.copyOf(sorted));
+            }
+            byCategory.put(category, orders);
+        });
+        return new FlashSaleItemIndex(version, byCategory);
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Up to size items after the cursor, matching the category and (inclusive) sale price bounds.
+     * nextCursor is null on the last page. The cursor must have been taken in order.
+     */
+    Page page(String category, SortOrder order, Long minPriceCents, Long maxPriceCents, Cursor after, int size) {
+        Map<SortOrder, List<CachedItem>> orders = byCategory.get(category == null ? ALL : normalize(category));
+        if (orders == null) {
+            return new Page(List.of(), null);
+        }
+        List<CachedItem> sorted = orders.get(order);
+
+        List<CachedItem> page = new ArrayList<>(Math.min(size, sorted.size()));
+        int i = after == null ? 0 : firstAfter(sorted, order, after);
+        for (; i < sorted.size() && page.size() < size; i++) {
+            CachedItem item = sorted.get(i);
+            long price = item.salePriceCents();
+            if (minPriceCents != null && price < minPriceCents) {
+                if (order == SortOrder.PRICE_DESC) {
+                    break;
+                }
+                continue;
+            }
+            if (maxPriceCents != null && price > maxPriceCents) {
+                if (order == SortOrder.PRICE_ASC) {
+                    break;
+                }
+                continue;
+            }
+            page.add(item);
+        }
+
+        boolean more = page.size() == size && i < sorted.size();
+        String nextCursor = more
+                ? new Cursor(order, order.keyOf(page.get(page.size() - 1)), page.get(page.size() - 1).flashSaleProductId()).encode()
+                : null;
+        return new Page(page, nextCursor);
+    }
+
+    /**
+     * Index of the first item strictly after the cursor position. Works even if the cursor's
+     * item is gone from this version.
+     */
+    private static int firstAfter(List<CachedItem> sorted, SortOrder order, Cursor after) {
+        int low = 0;
+        int high = sorted.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            CachedItem item = sorted.get(mid);
+            if (order.compare(order.keyOf(item), item.flashSaleProductId(), after.key(), after.flashSaleProductId()) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long discountBasisPoints(CachedItem item) {
+        if (item.originalPriceCents() <= 0) {
+            return 0;
+        }
+        return (item.originalPriceCents() - item.salePriceCents()) * 10_000 / item.originalPriceCents();
+    }
+
+    private static String normalize(String category) {
+        return category.trim().toLowerCase(Locale.ROOT);
+    }
+}
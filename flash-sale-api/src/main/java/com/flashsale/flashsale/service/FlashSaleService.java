@@ -1,85 +1,167 @@
 package com.flashsale.flashsale.service;
 
 import com.flashsale.common.exception.BusinessException;
+import com.flashsale.common.exception.RedisUnavailableException;
+import com.flashsale.common.jfr.PurchaseAttemptEvent;
+import com.flashsale.common.redis.LongCodec;
+import com.flashsale.common.redis.RedisFunctions;
+import com.flashsale.common.redis.RedisKeys;
+import com.flashsale.common.redis.TypedRedis;
+import com.flashsale.common.util.Money;
+import com.flashsale.flashsale.dto.FlashSaleItemPageResponse;
 import com.flashsale.flashsale.dto.FlashSaleItemResponse;
 import com.flashsale.flashsale.event.PurchaseEvent;
+import com.flashsale.flashsale.exception.PurchaseRejectedException;
+import com.flashsale.flashsale.exception.PurchaseRejectedException.Reason;
+import com.flashsale.flashsale.service.PurchaseMetrics.Stage;
+import com.flashsale.order.repository.OrderRepository;
+import com.flashsale.order.service.PersistenceLagTracker;
 import com.flashsale.wallet.service.WalletService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.Tracer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
-import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FlashSaleService {
 
-    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int MAX_PAGE_SIZE = 200;
+    private static final int MAX_IDEMPOTENCY_KEY_LENGTH = 64;
 
-    private final RedisTemplate<String, Object> redisTemplate;
-    private final DefaultRedisScript<Long> flashSaleLuaScript;
+    private final TypedRedis typedRedis;
+    private final RedisFunctions redisFunctions;
     private final ApplicationEventPublisher eventPublisher;
     private final FlashSaleCacheService flashSaleCacheService;
     private final WalletService walletService;
+    private final PurchaseDeduplicator purchaseDeduplicator;
+    private final PurchaseMetrics purchaseMetrics;
+    private final PersistenceLagTracker persistenceLagTracker;
+    private final OrderRepository orderRepository;
+    private final ObservationRegistry observationRegistry;
+    private final Tracer tracer;
+
+    private final AtomicReference<FlashSaleItemIndex> itemIndex = new AtomicReference<>();
+
+    @Value("${app.purchase.idempotency-ttl-seconds:3600}")
+    private long idempotencyTtlSeconds;
 
     /**
-     * Get all flash sale items that are active right now.
-     * Reads item metadata from Redis cache (populated by background job),
-     * then merges with live stock from Redis.
-     * Falls back to DB query if cache is empty.
+     * One page of the flash sale items that are active right now, optionally filtered by
+     * category and sale price range.
+     * Served from an in-memory index of the current catalog version (rebuilt only when the
+     * worker publishes a new version); only the page's stock counters are read from Redis.
+     * Stale or missing cache is rebuilt by a single refresher (see FlashSaleCacheService#currentVersion),
+     * so a worker outage never turns into a herd of DB rebuilds.
      */
-    public List<FlashSaleItemResponse> getActiveFlashSales() {
-        List<FlashSaleCacheService.CachedItem> cached = flashSaleCacheService.getCachedItems();
+    public FlashSaleItemPageResponse getActiveFlashSales(String category, BigDecimal minPrice, BigDecimal maxPrice,
+                                                         String sort, String cursor, int size) {
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            throw new BusinessException("size must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        FlashSaleItemIndex.SortOrder order = FlashSaleItemIndex.SortOrder.parse(sort);
+        FlashSaleItemIndex.Cursor after = cursor != null && !cursor.isBlank() ? FlashSaleItemIndex.Cursor.decode(cursor, order) : null;
+        Long minCents = minPrice != null ? Money.toCents(minPrice.setScale(2, RoundingMode.CEILING)) : null;
+        Long maxCents = maxPrice != null ? Money.toCents(maxPrice.setScale(2, RoundingMode.FLOOR)) : null;
 
-        if (cached == null) {
-            log.warn("Flash sale cache miss — triggering refresh");
-            flashSaleCacheService.refreshCache();
-            cached = flashSaleCacheService.getCachedItems();
+        FlashSaleItemIndex index = currentIndex();
+        if (index == null) {
+            return FlashSaleItemPageResponse.builder().items(List.of()).build();
         }
 
-        if (cached == null || cached.isEmpty()) {
-            return List.of();
+        FlashSaleItemIndex.Page page = index.page(category, order, minCents, maxCents, after, size);
+        if (page.items().isEmpty()) {
+            return FlashSaleItemPageResponse.builder().items(List.of()).build();
         }
 
-        List<String> stockKeys = cached.stream()
-                .map(item -> "fs:fsp:" + item.flashSaleProductId() + ":stock")
-                .toList();
-        List<Object> redisStocks = redisTemplate.opsForValue().multiGet(stockKeys);
-        List<FlashSaleItemResponse> responses = new ArrayList<>(cached.size());
+        byte[][] stockKeys = new byte[page.items().size()][];
+        for (int i = 0; i < stockKeys.length; i++) {
+            stockKeys[i] = RedisKeys.STOCK.key(page.items().get(i).flashSaleProductId());
+        }
+        long[] stocks = typedRedis.getLongs(stockKeys);
+        List<FlashSaleItemResponse> responses = new ArrayList<>(page.items().size());
 
-        for (int i = 0; i < cached.size(); i++) {
-            FlashSaleCacheService.CachedItem item = cached.get(i);
-            
-            Object redisStock = (redisStocks != null && i < redisStocks.size()) ? redisStocks.get(i) : null;
-            Integer availableStock = (redisStock != null) ? Integer.parseInt(redisStock.toString()) : 0;
+        for (int i = 0; i < page.items().size(); i++) {
+            int availableStock = stocks[i] != TypedRedis.MISSING ? (int) stocks[i] : 0;
+            responses.add(toResponse(page.items().get(i), availableStock));
+        }
+
+        return FlashSaleItemPageResponse.builder()
+                .items(responses)
+                .nextCursor(page.nextCursor())
+                .build();
+    }
 
-            responses.add(FlashSaleItemResponse.builder()
-                    .flashSaleProductId(item.flashSaleProductId())
-                    .productId(item.productId())
-                    .productName(item.productName())
-                    .originalPrice(item.originalPrice())
-                    .salePrice(item.salePrice())
-                    .flashSaleName(item.flashSaleName())
-                    .startTime(item.startTime())
-                    .endTime(item.endTime())
-                    .availableStock(availableStock)
-                    .build());
+    /**
+     * Index for the catalog version currently in Redis; one thread rebuilds it when the
+     * version moves, the rest wait for it. Returns null if nothing is cached.
+     */
+    private FlashSaleItemIndex currentIndex() {
+        long version = flashSaleCacheService.currentVersion();
+        if (version < 0) {
+            return null;
+        }
+        FlashSaleItemIndex index = itemIndex.get();
+        if (index != null && index.version() >= version) {
+            return index;
+        }
+        synchronized (itemIndex) {
+            index = itemIndex.get();
+            if (index != null && index.version() >= version) {
+                return index;
+            }
+            FlashSaleCacheService.Catalog catalog = flashSaleCacheService.getCatalog();
+            if (catalog == null) {
+                return index;
+            }
+            index = FlashSaleItemIndex.build(catalog.version(),
+                    catalog.items().stream().map(FlashSaleCacheService.ListedItem::item).toList());
+            itemIndex.set(index);
+            log.debug("Item index rebuilt for catalog version {} ({} items)", catalog.version(), catalog.items().size());
+            return index;
         }
+    }
+
+    /**
+     * Get a single active flash sale item by its flashSaleProductId.
+     */
+    public FlashSaleItemResponse getFlashSaleItem(Long flashSaleProductId) {
+        FlashSaleCacheService.ListedItem listed = flashSaleCacheService.getItem(flashSaleProductId);
+        if (listed == null) {
+            throw new BusinessException(404, "Flash sale item not found or not active");
+        }
+        return toResponse(listed.item(), listed.availableStock());
+    }
 
-        return responses;
+    public static FlashSaleItemResponse toResponse(FlashSaleCacheService.CachedItem item, int availableStock) {
+        return FlashSaleItemResponse.builder()
+                .flashSaleProductId(item.flashSaleProductId())
+                .productId(item.productId())
+                .productName(item.productName())
+                .category(item.category())
+                .originalPrice(item.originalPrice())
+                .salePrice(item.salePrice())
+                .flashSaleName(item.flashSaleName())
+                .startTime(item.startTime())
+                .endTime(item.endTime())
+                .availableStock(availableStock)
+                .build();
     }
 
     /**
@@ -91,15 +173,62 @@ public class FlashSaleService {
      * 2. Pre-check sale time window (soft guard, outside Lua)
      * 3. Execute Lua: atomic balance + stock + daily limit check & mutation
      * 4. Fire async persistence event on success
+     *
+     * With an idempotency key, the script records the outcome under that key and replays it
+     * for retries (same orderNo, or the same error) instead of evaluating the purchase again.
+     * Duplicate concurrent requests and repeats after a purchase are absorbed on this node
+     * first (see PurchaseDeduplicator).
+     */
+    public String attemptPurchase(Long userId, Long flashSaleProductId, String idempotencyKey) {
+        if (idempotencyKey != null && (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_IDEMPOTENCY_KEY_LENGTH)) {
+            throw new BusinessException("Idempotency-Key must be 1 to " + MAX_IDEMPOTENCY_KEY_LENGTH + " characters");
+        }
+        // UTC, like the daily key's TTL and the orders partitions built on the order_no's day
+        String today = PurchaseKeys.day(LocalDate.now(ZoneOffset.UTC));
+        return purchaseDeduplicator.execute(userId, flashSaleProductId, today, idempotencyKey,
+                () -> executePurchase(userId, flashSaleProductId, today, idempotencyKey));
+    }
+
+    /**
+     * Runs the purchase inside a PurchaseAttemptEvent, committed whatever the outcome (JFR keeps
+     * it only if the recording is on and the request exceeded the threshold), and inside a
+     * purchase.attempt observation: the "purchase" span, parent of the Redis command spans and,
+     * through PurchaseEvent, of the persistence spans. Rejections are outcomes, not span errors.
      */
-    public String attemptPurchase(Long userId, Long flashSaleProductId) {
+    private String executePurchase(Long userId, Long flashSaleProductId, String today, String idempotencyKey) {
+        PurchaseAttemptEvent trace = new PurchaseAttemptEvent();
+        trace.begin();
+        trace.userId = userId;
+        trace.flashSaleProductId = flashSaleProductId;
+        Observation observation = Observation.createNotStarted("purchase.attempt", observationRegistry)
+                .contextualName("purchase")
+                .highCardinalityKeyValue("fsp.id", String.valueOf(flashSaleProductId))
+                .start();
+        try (Observation.Scope scope = observation.openScope()) {
+            return executePurchase(userId, flashSaleProductId, today, idempotencyKey, trace);
+        } catch (PurchaseRejectedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            observation.error(e);
+            throw e;
+        } finally {
+            observation.lowCardinalityKeyValue("code", String.valueOf(trace.resultCode));
+            observation.stop();
+            trace.commit();
+        }
+    }
+
+    private String executePurchase(Long userId, Long flashSaleProductId, String today, String idempotencyKey,
+                                   PurchaseAttemptEvent trace) {
+        long stageStart = System.nanoTime();
+
         // 1. Ensure user balance is loaded into Redis
         walletService.ensureBalanceInRedis(userId);
+        stageStart = purchaseMetrics.stage(Stage.BALANCE, stageStart, trace);
 
         // 2. Pre-check sale time window (soft guard)
         checkSaleTimeWindow(flashSaleProductId);
-
-        String today = LocalDate.now().format(DATE_FMT);
+        stageStart = purchaseMetrics.stage(Stage.WINDOW, stageStart, trace);
 
         // TTL = seconds from now until midnight (UTC) so daily key expires at end of calendar day
         ZonedDateTime nowUtc = ZonedDateTime.now(ZoneOffset.UTC);
@@ -109,84 +238,142 @@ public class FlashSaleService {
             ttlSeconds = 1;
         }
 
-        // 3. Build KEYS and ARGV for Lua script
-        List<String> keys = List.of(
-                "fs:fsp:" + flashSaleProductId + ":stock",
-                "fs:user:" + userId + ":daily:" + today,
-                "fs:fsp:" + flashSaleProductId + ":price",
-                "fs:user:" + userId + ":balance"
-        );
-        List<String> args = List.of(String.valueOf(ttlSeconds));
+        // 3. Build KEYS and ARGV for the purchase function
+        byte[][] keys = PurchaseKeys.scriptKeys(userId, flashSaleProductId, today, idempotencyKey);
+        String orderNo = PurchaseKeys.orderNo(userId, flashSaleProductId, today);
 
-        Long result = redisTemplate.execute(flashSaleLuaScript, keys, args.toArray());
+        List<Object> result;
+        try {
+            result = redisFunctions.call(RedisFunctions.PURCHASE, keys,
+                    LongCodec.encode(ttlSeconds), orderNo.getBytes(StandardCharsets.US_ASCII),
+                    LongCodec.encode(flashSaleProductId), LongCodec.encode(idempotencyTtlSeconds));
+        } catch (RedisUnavailableException e) {
+            if (e.getReason() == RedisUnavailableException.Reason.FAILED && idempotencyKey == null) {
+                // Redis may have applied it; with no key to replay, only this line can tie the
+                // user's daily flag and balance change to an order number
+                log.error("Purchase outcome unknown, order may need reconciliation | user={} fspId={} orderNo={}",
+                        userId, flashSaleProductId, orderNo);
+            }
+            throw e;
+        }
+        stageStart = purchaseMetrics.stage(Stage.SCRIPT, stageStart, trace);
 
-        if (result == null) {
+        if (result == null || result.isEmpty()) {
             throw new BusinessException(500, "Flash sale service unavailable");
         }
 
-        return switch (result.intValue()) {
+        long code = (Long) result.get(0);
+        trace.resultCode = (int) code;
+        purchaseMetrics.scriptResult(code);
+        return switch ((int) code) {
             case 1 -> {
-                String orderNo = generateOrderNo(userId, flashSaleProductId);
-                log.info("Purchase SUCCESS | user={} fspId={} orderNo={}", userId, flashSaleProductId, orderNo);
-
+                long acceptedAt = stageStart;
                 BigDecimal price = readCachedPrice(flashSaleProductId);
+                long publishStart = purchaseMetrics.stage(Stage.PRICE, stageStart, trace);
 
                 // Fire async persistence event (non-blocking)
-                log.debug("Publishing PurchaseEvent | thread={} orderNo={}", Thread.currentThread().getName(), orderNo);
-                eventPublisher.publishEvent(new PurchaseEvent(this, userId, flashSaleProductId, price, orderNo));
-                log.debug("PurchaseEvent published (should return immediately) | thread={} orderNo={}", Thread.currentThread().getName(), orderNo);
+                publishOrder(userId, flashSaleProductId, price, orderNo, idempotencyKey, acceptedAt);
+                purchaseMetrics.stage(Stage.PUBLISH, publishStart, trace);
+                purchaseMetrics.succeeded(userId, flashSaleProductId, orderNo);
 
+                purchaseDeduplicator.recordBought(userId, today, orderNo, idempotencyKey);
                 yield orderNo;
             }
-            case -1 -> throw new BusinessException("Item price not found — sale may not be active");
-            case -2 -> throw new BusinessException("Balance not loaded — please try again");
-            case -3 -> throw new BusinessException("Insufficient balance");
-            case -4 -> throw new BusinessException("You have already purchased this item today");
-            case -5 -> throw new BusinessException("Item is sold out");
-            default -> throw new BusinessException(500, "Unexpected result from flash sale script: " + result);
+            case 2 -> {
+                // Retry of a purchase that already went through
+                String originalOrderNo = new String((byte[]) result.get(1), StandardCharsets.US_ASCII);
+                republishIfLost(userId, flashSaleProductId, originalOrderNo, idempotencyKey, result);
+                purchaseMetrics.replayed(userId, flashSaleProductId, originalOrderNo);
+                purchaseDeduplicator.recordBought(userId, today, originalOrderNo, idempotencyKey);
+                yield originalOrderNo;
+            }
+            case -4 -> {
+                purchaseDeduplicator.recordBought(userId, today, null, idempotencyKey);
+                throw PurchaseRejectedException.of(Reason.ALREADY_PURCHASED);
+            }
+            default -> {
+                PurchaseRejectedException rejection = PurchaseRejectedException.forScriptCode(code);
+                if (rejection != null) {
+                    throw rejection;
+                }
+                throw new BusinessException(500, "Unexpected result from flash sale script: " + code);
+            }
         };
     }
 
+    /**
+     * Hand the order to async persistence. The lag ticket is only held while the event is
+     * actually on its way to the listener.
+     */
+    private void publishOrder(Long userId, Long flashSaleProductId, BigDecimal price, String orderNo,
+                              String idempotencyKey, long acceptedAt) {
+        long lagTicket = persistenceLagTracker.accepted(acceptedAt);
+        try {
+            eventPublisher.publishEvent(new PurchaseEvent(this, userId, flashSaleProductId, price, orderNo,
+                    idempotencyKey, acceptedAt, lagTicket, tracer.currentTraceContext().context()));
+        } catch (RuntimeException e) {
+            persistenceLagTracker.abandoned(lagTicket);
+            throw e;
+        }
+    }
+
+    /**
+     * A replayed purchase whose order isn't marked persisted may never have reached
+     * persistence: the request that bought it can fail after the script ran (the FCALL reply
+     * timed out and the client got a 503). Unless its row exists, publish it again with the
+     * price recorded at purchase; persistOrder skips an order that is already there, so a copy
+     * racing the original event is harmless.
+     */
+    private void republishIfLost(Long userId, Long flashSaleProductId, String orderNo, String idempotencyKey,
+                                 List<Object> result) {
+        if ("1".equals(replyText(result, 2)) || orderRepository.existsByOrderNo(orderNo)) {
+            return;
+        }
+        String cents = replyText(result, 3);
+        BigDecimal price = cents.isEmpty() ? readCachedPrice(flashSaleProductId) : Money.fromCents(Long.parseLong(cents));
+        log.info("Order {} replayed before it was persisted; publishing it again", orderNo);
+        publishOrder(userId, flashSaleProductId, price, orderNo, idempotencyKey, System.nanoTime());
+    }
+
+    private static String replyText(List<Object> result, int index) {
+        return index < result.size() && result.get(index) instanceof byte[] bytes
+                ? new String(bytes, StandardCharsets.US_ASCII) : "";
+    }
+
     /**
      * Soft pre-check: verify the sale time window before hitting Lua.
      * This is NOT the atomic guard — just an early-exit optimization.
      */
     private void checkSaleTimeWindow(Long flashSaleProductId) {
-        Object startObj = redisTemplate.opsForValue().get("fs:fsp:" + flashSaleProductId + ":start");
-        Object endObj = redisTemplate.opsForValue().get("fs:fsp:" + flashSaleProductId + ":end");
+        long[] window = typedRedis.getLongs(RedisKeys.START.key(flashSaleProductId), RedisKeys.END.key(flashSaleProductId));
+        long start = window[0];
+        long end = window[1];
 
-        if (startObj == null || endObj == null) {
-            throw new BusinessException("Flash sale not found or not active");
+        if (start == TypedRedis.MISSING || end == TypedRedis.MISSING) {
+            throw PurchaseRejectedException.of(Reason.NOT_ACTIVE);
         }
 
         long now = System.currentTimeMillis();
-        long start = Long.parseLong(startObj.toString());
-        long end = Long.parseLong(endObj.toString());
 
         if (now < start) {
-            throw new BusinessException("Flash sale has not started yet");
+            throw PurchaseRejectedException.of(Reason.NOT_STARTED);
         }
         if (now > end) {
-            throw new BusinessException("Flash sale has already ended");
+            throw PurchaseRejectedException.of(Reason.ENDED);
         }
     }
 
     /**
-     * Read cached price (stored in cents) and convert back to BigDecimal.
+     * Read cached price (stored in cents) and convert back to BigDecimal. Runs after the script
+     * has taken the money, so it is not subject to the Redis guard's fast-fail.
      */
     private BigDecimal readCachedPrice(Long fspId) {
-        Object priceObj = redisTemplate.opsForValue().get("fs:fsp:" + fspId + ":price");
-        if (priceObj == null) {
+        byte[] priceKey = RedisKeys.PRICE.key(fspId);
+        long priceCents = TypedRedis.decode(typedRedis.readAfterWrite(commands -> commands.get(priceKey)));
+        if (priceCents == TypedRedis.MISSING) {
             log.warn("Price not found in cache for fspId={}, defaulting to 0", fspId);
             return BigDecimal.ZERO;
         }
-        long priceCents = Long.parseLong(priceObj.toString());
-        return BigDecimal.valueOf(priceCents).divide(BigDecimal.valueOf(100), 2, RoundingMode.HALF_UP);
-    }
-
-    private String generateOrderNo(Long userId, Long fspId) {
-        String datePart = LocalDate.now().format(DATE_FMT);
-        String randomPart = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        return "FS-" + datePart + "-" + userId + "-" + fspId + "-" + randomPart;
+        return Money.fromCents(priceCents);
     }
 }
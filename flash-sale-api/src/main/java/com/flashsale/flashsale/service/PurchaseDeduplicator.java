@@ -0,0 +1,116 @@
+package com.flashsale.flashsale.service;
+
+import com.flashsale.flashsale.exception.PurchaseRejectedException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Node-local guard in front of the purchase script against clients hammering /purchase:
+ * <ul>
+ *   <li>Concurrent requests for the same (user, item) join the attempt already in flight
+ *       and get its result, instead of each running the script.</li>
+ *   <li>Once this node has seen the user buy today (success or -4), further requests are
+ *       answered here for a short while: "already purchased", or the original orderNo for a
+ *       retry with the same Idempotency-Key. Requests with any other key still go to Redis,
+ *       which is authoritative for replays of purchases made through another node.</li>
+ * </ul>
+ */
+@Component
+public class PurchaseDeduplicator {
+
+    private record InFlightKey(long userId, long flashSaleProductId) {}
+
+    /** The user's purchase today as seen by this node; orderNo/idempotencyKey null if learned from -4. */
+    private record Bought(String day, String orderNo, String idempotencyKey) {}
+
+    private final ConcurrentHashMap<InFlightKey, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final Cache<Long, Bought> bought;
+    private final Counter joined;
+    private final Counter rejected;
+    private final Counter replayed;
+
+    public PurchaseDeduplicator(
+            MeterRegistry meterRegistry,
+            @Value("${app.purchase.bought-marker-ttl-ms:300000}") long boughtMarkerTtlMillis
+    ) {
+        this.bought = Caffeine.newBuilder()
+                .maximumSize(1_000_000)
+                .expireAfterWrite(Duration.ofMillis(boughtMarkerTtlMillis))
+                .build();
+        this.joined = Counter.builder("purchase.dedup").tag("result", "joined").register(meterRegistry);
+        this.rejected = Counter.builder("purchase.dedup").tag("result", "rejected").register(meterRegistry);
+        this.replayed = Counter.builder("purchase.dedup").tag("result", "replayed").register(meterRegistry);
+    }
+
+    /**
+     * Run the attempt unless this node can answer locally or an identical one is in flight.
+     */
+    public String execute(long userId, long flashSaleProductId, String day, String idempotencyKey,
+                          Supplier<String> attempt) {
+        Bought marker = bought.getIfPresent(userId);
+        if (marker != null && marker.day().equals(day)) {
+            if (idempotencyKey == null) {
+                rejected.increment();
+                throw PurchaseRejectedException.of(PurchaseRejectedException.Reason.ALREADY_PURCHASED);
+            }
+            if (idempotencyKey.equals(marker.idempotencyKey())) {
+                replayed.increment();
+                return marker.orderNo();
+            }
+        }
+
+        InFlightKey key = new InFlightKey(userId, flashSaleProductId);
+        CompletableFuture<String> mine = new CompletableFuture<>();
+        CompletableFuture<String> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            joined.increment();
+            return await(running);
+        }
+
+        try {
+            String orderNo = attempt.get();
+            mine.complete(orderNo);
+            return orderNo;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * The script reported the user's purchase for the day: orderNo on success, null on -4.
+     */
+    public void recordBought(long userId, String day, String orderNo, String idempotencyKey) {
+        Bought existing = bought.getIfPresent(userId);
+        // Don't let a later -4 erase the orderNo of the success it refers to
+        if (orderNo == null && existing != null && existing.day().equals(day) && existing.orderNo() != null) {
+            return;
+        }
+        bought.put(userId, new Bought(day, orderNo, orderNo != null ? idempotencyKey : null));
+    }
+
+    private static String await(CompletableFuture<String> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            Throwable cause = Objects.requireNonNullElse(e.getCause(), e);
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.flashsale.flashsale.service;
+
+import com.flashsale.common.redis.RedisKeys;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.UUID;
+
+/**
+ * Redis keys of the purchase path (see fs_purchase_v1 in scripts/flashsale_functions.lua) and the
+ * order numbers it assigns.
+ */
+public final class PurchaseKeys {
+
+    private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private PurchaseKeys() {
+    }
+
+    /**
+     * Day stamp used in the daily-limit key and order numbers.
+     */
+    public static String day(LocalDate date) {
+        return date.format(DATE_FMT);
+    }
+
+    public static String stock(long flashSaleProductId) {
+        return RedisKeys.STOCK.name(flashSaleProductId);
+    }
+
+    public static String price(long flashSaleProductId) {
+        return RedisKeys.PRICE.name(flashSaleProductId);
+    }
+
+    public static String start(long flashSaleProductId) {
+        return RedisKeys.START.name(flashSaleProductId);
+    }
+
+    public static String end(long flashSaleProductId) {
+        return RedisKeys.END.name(flashSaleProductId);
+    }
+
+    /**
+     * KEYS for fs_purchase_v1, in order; the idempotency key is appended only if present.
+     */
+    public static byte[][] scriptKeys(long userId, long flashSaleProductId, String day, String idempotencyKey) {
+        byte[][] keys = new byte[idempotencyKey != null ? 5 : 4][];
+        keys[0] = RedisKeys.STOCK.key(flashSaleProductId);
+        keys[1] = RedisKeys.DAILY.key(userId, day.getBytes(StandardCharsets.US_ASCII));
+        keys[2] = RedisKeys.PRICE.key(flashSaleProductId);
+        keys[3] = RedisKeys.BALANCE.key(userId);
+        if (idempotencyKey != null) {
+            keys[4] = idempotency(userId, idempotencyKey);
+        }
+        return keys;
+    }
+
+    /**
+     * Outcome hash of a user's Idempotency-Key (fs:idem:{userId}:{key}).
+     */
+    public static byte[] idempotency(long userId, String idempotencyKey) {
+        return RedisKeys.IDEMPOTENCY.key(userId, idempotencyKey.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static String orderNo(long userId, long flashSaleProductId, String day) {
+        String randomPart = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        return "FS-" + day + "-" + userId + "-" + flashSaleProductId + "-" + randomPart;
+    }
+}
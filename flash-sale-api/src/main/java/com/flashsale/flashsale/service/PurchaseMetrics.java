@@ -0,0 +1,128 @@
+package com.flashsale.flashsale.service;
+
+import com.flashsale.common.jfr.PurchaseAttemptEvent;
+import com.flashsale.common.util.LogSampler;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the purchase pipeline, so its behaviour is visible without a log line per request:
+ * <ul>
+ *   <li>purchase.stage{stage} — latency histogram of each step of FlashSaleService#attemptPurchase</li>
+ *   <li>purchase.script.result{code} — every fs_purchase_v1 outcome</li>
+ *   <li>purchase.completed{outcome} and purchase.item.sold{fspId} — successes; fspId tags are capped
+ *       at app.metrics.max-item-tags, later items are counted under "other"</li>
+ * </ul>
+ * Success INFO lines are sampled per app.logging.hot-path-sample-ms.
+ */
+@Slf4j
+@Component
+public class PurchaseMetrics {
+
+    public enum Stage { BALANCE, WINDOW, SCRIPT, PRICE, PUBLISH }
+
+    private static final String OTHER_ITEMS = "other";
+
+    private final MeterRegistry meterRegistry;
+    private final int maxItemTags;
+    private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+    private final Map<Long, Counter> scriptResults = new ConcurrentHashMap<>();
+    private final Map<Long, Counter> itemsSold = new ConcurrentHashMap<>();
+    private final Counter otherItemsSold;
+    private final Counter succeeded;
+    private final Counter replayed;
+    private final LogSampler successSampler;
+    private final LogSampler replaySampler;
+
+    public PurchaseMetrics(
+            MeterRegistry meterRegistry,
+            @Value("${app.metrics.max-item-tags:500}") int maxItemTags,
+            @Value("${app.logging.hot-path-sample-ms:0}") long sampleMillis
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.maxItemTags = maxItemTags;
+        for (Stage stage : Stage.values()) {
+            stages.put(stage, Timer.builder("purchase.stage")
+                    .tag("stage", stage.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+        }
+        // fs_purchase_v1 codes: 2 (replay), 1 (success), -1..-6 (rejections)
+        for (long code = -6; code <= 2; code++) {
+            if (code != 0) {
+                scriptResults.put(code, scriptResultCounter(code));
+            }
+        }
+        this.otherItemsSold = Counter.builder("purchase.item.sold").tag("fspId", OTHER_ITEMS).register(meterRegistry);
+        this.succeeded = Counter.builder("purchase.completed").tag("outcome", "success").register(meterRegistry);
+        this.replayed = Counter.builder("purchase.completed").tag("outcome", "replay").register(meterRegistry);
+        this.successSampler = new LogSampler(sampleMillis);
+        this.replaySampler = new LogSampler(sampleMillis);
+    }
+
+    /**
+     * Record the stage that began at startedAt (System.nanoTime), in the meter and the request's
+     * JFR event, and return the time it ended, which is when the next stage starts.
+     */
+    public long stage(Stage stage, long startedAt, PurchaseAttemptEvent trace) {
+        long now = System.nanoTime();
+        long nanos = now - startedAt;
+        stages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+        switch (stage) {
+            case BALANCE -> trace.balanceTime = nanos;
+            case WINDOW -> trace.windowTime = nanos;
+            case SCRIPT -> trace.scriptTime = nanos;
+            case PRICE -> trace.priceTime = nanos;
+            case PUBLISH -> trace.publishTime = nanos;
+        }
+        return now;
+    }
+
+    public void scriptResult(long code) {
+        scriptResults.computeIfAbsent(code, this::scriptResultCounter).increment();
+    }
+
+    public void succeeded(long userId, long flashSaleProductId, String orderNo) {
+        succeeded.increment();
+        itemSoldCounter(flashSaleProductId).increment();
+        long skipped = successSampler.sample();
+        if (skipped >= 0) {
+            log.info("Purchase SUCCESS | user={} fspId={} orderNo={} skipped={}", userId, flashSaleProductId, orderNo, skipped);
+        }
+    }
+
+    public void replayed(long userId, long flashSaleProductId, String orderNo) {
+        replayed.increment();
+        long skipped = replaySampler.sample();
+        if (skipped >= 0) {
+            log.info("Purchase REPLAY | user={} fspId={} orderNo={} skipped={}", userId, flashSaleProductId, orderNo, skipped);
+        }
+    }
+
+    private Counter itemSoldCounter(long flashSaleProductId) {
+        Counter counter = itemsSold.get(flashSaleProductId);
+        if (counter != null) {
+            return counter;
+        }
+        // Racy by a few entries at most; only bounds the tag count
+        if (itemsSold.size() >= maxItemTags) {
+            return otherItemsSold;
+        }
+        return itemsSold.computeIfAbsent(flashSaleProductId, id -> Counter.builder("purchase.item.sold")
+                .tag("fspId", String.valueOf(id))
+                .register(meterRegistry));
+    }
+
+    private Counter scriptResultCounter(long code) {
+        return Counter.builder("purchase.script.result").tag("code", String.valueOf(code)).register(meterRegistry);
+    }
+}
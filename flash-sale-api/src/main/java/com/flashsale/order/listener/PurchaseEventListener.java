@@ -1,44 +1,158 @@
 package com.flashsale.order.listener;
 
+import com.flashsale.common.exception.RedisUnavailableException;
+import com.flashsale.common.jfr.OrderPersistEvent;
+import com.flashsale.common.redis.RedisFunctions;
+import com.flashsale.common.util.LogSampler;
 import com.flashsale.flashsale.event.PurchaseEvent;
+import com.flashsale.flashsale.service.PurchaseKeys;
 import com.flashsale.order.service.OrderPersistenceService;
-import lombok.RequiredArgsConstructor;
+import com.flashsale.order.service.PersistenceLagTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.tracing.CurrentTraceContext;
+import io.micrometer.tracing.Tracer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.context.event.EventListener;
 
+import java.nio.charset.StandardCharsets;
+
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class PurchaseEventListener {
 
-    private static final int MAX_EVENT_RETRIES = 3;
+    public static final int MAX_EVENT_RETRIES = 3;
 
     private final OrderPersistenceService orderPersistenceService;
+    private final PersistenceLagTracker persistenceLagTracker;
+    private final RedisFunctions redisFunctions;
+    private final Counter persisted;
+    private final Counter retried;
+    private final Counter failed;
+    private final LogSampler persistedSampler;
+    private final ObservationRegistry observationRegistry;
+    private final Tracer tracer;
+
+    public PurchaseEventListener(
+            OrderPersistenceService orderPersistenceService,
+            PersistenceLagTracker persistenceLagTracker,
+            RedisFunctions redisFunctions,
+            MeterRegistry meterRegistry,
+            ObservationRegistry observationRegistry,
+            Tracer tracer,
+            @Value("${app.logging.hot-path-sample-ms:0}") long sampleMillis
+    ) {
+        this.orderPersistenceService = orderPersistenceService;
+        this.persistenceLagTracker = persistenceLagTracker;
+        this.redisFunctions = redisFunctions;
+        this.observationRegistry = observationRegistry;
+        this.tracer = tracer;
+        this.persisted = Counter.builder("order.persist").tag("result", "persisted").register(meterRegistry);
+        this.retried = Counter.builder("order.persist").tag("result", "retried").register(meterRegistry);
+        this.failed = Counter.builder("order.persist").tag("result", "failed").register(meterRegistry);
+        this.persistedSampler = new LogSampler(sampleMillis);
+    }
 
+    /**
+     * Runs in the purchase's trace: each attempt is an order.persist.attempt observation (span
+     * "persist order") under the purchase span carried by the event, with the JDBC spans below it.
+     */
     @Async("orderPersistenceExecutor")
     @EventListener
     public void onPurchaseEvent(PurchaseEvent event) {
-        log.info("Received PurchaseEvent | thread={} orderNo={} user={} fspId={}",
-                Thread.currentThread().getName(), event.getOrderNo(), event.getUserId(), event.getFlashSaleProductId());
+        try (CurrentTraceContext.Scope purchase = tracer.currentTraceContext().maybeScope(event.getTraceContext())) {
+            persist(event);
+        }
+    }
+
+    private void persist(PurchaseEvent event) {
+        log.debug("Received PurchaseEvent | orderNo={} user={} fspId={}",
+                event.getOrderNo(), event.getUserId(), event.getFlashSaleProductId());
 
         for (int attempt = 1; attempt <= MAX_EVENT_RETRIES; attempt++) {
-            try {
+            OrderPersistEvent trace = new OrderPersistEvent();
+            trace.begin();
+            trace.orderNo = event.getOrderNo();
+            trace.flashSaleProductId = event.getFlashSaleProductId();
+            trace.queueTime = System.nanoTime() - event.getAcceptedAtNanos();
+            trace.attempt = attempt;
+            Observation observation = Observation.createNotStarted("order.persist.attempt", observationRegistry)
+                    .contextualName("persist order")
+                    .lowCardinalityKeyValue("attempt", String.valueOf(attempt))
+                    .highCardinalityKeyValue("order.no", event.getOrderNo())
+                    .start();
+            try (Observation.Scope scope = observation.openScope()) {
                 orderPersistenceService.persistOrder(
                         event.getUserId(),
                         event.getFlashSaleProductId(),
                         event.getSalePrice(),
                         event.getOrderNo()
                 );
+                trace.succeeded = true;
+                trace.commit();
+                persistenceLagTracker.committed(event.getLagTicket(), event.getAcceptedAtNanos());
+                markPersisted(event);
+                persisted.increment();
+                long skipped = persistedSampler.sample();
+                if (skipped >= 0) {
+                    log.info("Order persisted | orderNo={} user={} fspId={} skipped={}",
+                            event.getOrderNo(), event.getUserId(), event.getFlashSaleProductId(), skipped);
+                }
                 return;
             } catch (Exception ex) {
+                trace.commit();
+                if (ex instanceof DataIntegrityViolationException && isPersisted(event.getOrderNo())) {
+                    // Another copy of this event (re-sent on an idempotent replay) inserted it first
+                    persistenceLagTracker.committed(event.getLagTicket(), event.getAcceptedAtNanos());
+                    markPersisted(event);
+                    log.debug("Order {} was persisted by another copy of its event", event.getOrderNo());
+                    return;
+                }
+                observation.error(ex);
+                retried.increment();
                 log.error("Failed to persist order {} (attempt {}/{}): {}",
                         event.getOrderNo(), attempt, MAX_EVENT_RETRIES, ex.getMessage());
+            } finally {
+                observation.stop();
             }
         }
 
+        failed.increment();
+        persistenceLagTracker.abandoned(event.getLagTicket());
         log.error("CRITICAL: All {} retries exhausted for order {}. Requires manual reconciliation.",
                 MAX_EVENT_RETRIES, event.getOrderNo());
     }
+
+    private boolean isPersisted(String orderNo) {
+        try {
+            return orderPersistenceService.isPersisted(orderNo);
+        } catch (DataAccessException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Tell the Idempotency-Key's outcome that the order is saved, so replays of it stop looking
+     * the order up (see FlashSaleService#republishIfLost). Best effort: if Redis is unreachable,
+     * a replay just does the lookup.
+     */
+    private void markPersisted(PurchaseEvent event) {
+        if (event.getIdempotencyKey() == null) {
+            return;
+        }
+        try {
+            redisFunctions.call(RedisFunctions.ORDER_PERSISTED,
+                    new byte[][]{PurchaseKeys.idempotency(event.getUserId(), event.getIdempotencyKey())},
+                    event.getOrderNo().getBytes(StandardCharsets.US_ASCII));
+        } catch (DataAccessException | RedisUnavailableException e) {
+            log.debug("Could not mark order {} persisted: {}", event.getOrderNo(), e.getMessage());
+        }
+    }
 }
@@ -68,10 +68,18 @@ public class OrderPersistenceService {
         // 4. Decrement inventory.available_stock (Atomic)
         decrementInventoryAtomically(fsp.getProductId());
 
-        log.info("Order persisted to DB | orderNo={} user={} fspId={} productId={}",
+        log.debug("Order persisted to DB | orderNo={} user={} fspId={} productId={}",
                 orderNo, userId, flashSaleProductId, fsp.getProductId());
     }
 
+    /**
+     * Whether the order row exists; tells a lost insert race on order_no from a real failure.
+     */
+    @Transactional(readOnly = true)
+    public boolean isPersisted(String orderNo) {
+        return orderRepository.existsByOrderNo(orderNo);
+    }
+
     private void deductWalletAtomically(Long userId, BigDecimal amount) {
         // MySQL sẽ tự động lock dòng user này và trừ tiền an toàn tuyệt đối
         int updated = walletRepository.deductBalance(userId, amount);
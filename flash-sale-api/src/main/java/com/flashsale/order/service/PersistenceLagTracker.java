@@ -0,0 +1,85 @@
+package com.flashsale.order.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * How far MySQL trails Redis: from a successful fs_purchase_v1 call to the persistOrder
+ * commit (order.persist.lag, percentiles from Micrometer's HdrHistogram-based histogram),
+ * plus the orders still in between (order.persist.inflight, order.persist.oldest.age).
+ * <p>
+ * Pending orders are keyed by an increasing ticket, so the first entry is always the oldest.
+ */
+@Component
+public class PersistenceLagTracker {
+
+    private final ConcurrentSkipListMap<Long, Long> pending = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextTicket = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Timer lag;
+
+    public PersistenceLagTracker(MeterRegistry meterRegistry) {
+        this.lag = Timer.builder("order.persist.lag")
+                .description("Lua success to order commit")
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(Duration.ofMinutes(5))
+                .register(meterRegistry);
+        Gauge.builder("order.persist.inflight", inFlight, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("order.persist.oldest.age", this, tracker -> tracker.oldestPendingNanos() / 1e9)
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    /**
+     * An order was accepted in Redis at acceptedAtNanos (System.nanoTime); returns its ticket.
+     */
+    public long accepted(long acceptedAtNanos) {
+        long ticket = nextTicket.incrementAndGet();
+        pending.put(ticket, acceptedAtNanos);
+        inFlight.incrementAndGet();
+        return ticket;
+    }
+
+    /**
+     * The order is committed to MySQL.
+     */
+    public void committed(long ticket, long acceptedAtNanos) {
+        lag.record(System.nanoTime() - acceptedAtNanos, TimeUnit.NANOSECONDS);
+        release(ticket);
+    }
+
+    /**
+     * The order was given up on (retries exhausted); it no longer counts as in flight.
+     */
+    public void abandoned(long ticket) {
+        release(ticket);
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Age of the oldest order not yet committed, 0 if none.
+     */
+    public long oldestPendingNanos() {
+        Map.Entry<Long, Long> oldest = pending.firstEntry();
+        return oldest != null ? System.nanoTime() - oldest.getValue() : 0;
+    }
+
+    private void release(long ticket) {
+        if (pending.remove(ticket) != null) {
+            inFlight.decrementAndGet();
+        }
+    }
+}
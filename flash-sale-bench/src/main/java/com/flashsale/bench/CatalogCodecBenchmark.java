@@ -0,0 +1,83 @@
+package com.flashsale.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flashsale.flashsale.dto.FlashSaleItemResponse;
+import com.flashsale.flashsale.service.FlashSaleCacheService;
+import com.flashsale.flashsale.service.FlashSaleCacheService.CachedItem;
+import com.flashsale.flashsale.service.FlashSaleService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The catalog path of GET /flash-sale: a cached item as it comes back from Redis (the
+ * fs:item:{fspId} hash values, strings) decoded into a CachedItem, mapped to the response DTO
+ * and written as JSON.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogCodecBenchmark {
+
+    private CachedItem item;
+    private List<Object> row;
+    private FlashSaleItemResponse response;
+    // Same defaults as the ObjectMapper Spring Boot configures (java.time as ISO strings)
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setUp() {
+        item = new CachedItem(42L, 7L, 1001L, "Mechanical Keyboard", "Electronics",
+                1_599_000L, 999_000L, "Midnight Sale", 1_768_435_200_000L, 1_768_442_400_000L);
+        Map<String, String> hash = FlashSaleCacheService.encodeItem(item);
+        row = new ArrayList<>();
+        row.add(String.valueOf(item.flashSaleProductId()));
+        for (String field : List.of("flashSaleId", "productId", "productName", "category", "originalPriceCents",
+                "salePriceCents", "flashSaleName", "startMillis", "endMillis")) {
+            row.add(hash.get(field));
+        }
+        response = FlashSaleService.toResponse(item, 37);
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    }
+
+    @Benchmark
+    public Map<String, String> encodeItem() {
+        return FlashSaleCacheService.encodeItem(item);
+    }
+
+    @Benchmark
+    public CachedItem decodeItem() {
+        return FlashSaleCacheService.decodeItem(row, 0);
+    }
+
+    @Benchmark
+    public FlashSaleItemResponse toResponse() {
+        return FlashSaleService.toResponse(item, 37);
+    }
+
+    @Benchmark
+    public byte[] encodeResponse() throws Exception {
+        return objectMapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] decodeAndEncode() throws Exception {
+        return objectMapper.writeValueAsBytes(FlashSaleService.toResponse(FlashSaleCacheService.decodeItem(row, 0), 37));
+    }
+}
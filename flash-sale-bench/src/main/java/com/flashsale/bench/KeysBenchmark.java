@@ -0,0 +1,53 @@
+package com.flashsale.bench;
+
+import com.flashsale.flashsale.service.PurchaseKeys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-purchase string work in FlashSaleService: the fs_purchase_v1 KEYS and the order number.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KeysBenchmark {
+
+    private final long userId = 123_456L;
+    private final long flashSaleProductId = 42L;
+    private final String idempotencyKey = "4f0c1c7e-52a1-4b59-9d61-0c3f1a9e2b77";
+    private final LocalDate today = LocalDate.of(2026, 1, 15);
+    private final String day = PurchaseKeys.day(today);
+
+    @Benchmark
+    public String day() {
+        return PurchaseKeys.day(today);
+    }
+
+    @Benchmark
+    public byte[][] scriptKeys() {
+        return PurchaseKeys.scriptKeys(userId, flashSaleProductId, day, null);
+    }
+
+    @Benchmark
+    public byte[][] scriptKeysWithIdempotencyKey() {
+        return PurchaseKeys.scriptKeys(userId, flashSaleProductId, day, idempotencyKey);
+    }
+
+    @Benchmark
+    public String orderNo() {
+        return PurchaseKeys.orderNo(userId, flashSaleProductId, day);
+    }
+}
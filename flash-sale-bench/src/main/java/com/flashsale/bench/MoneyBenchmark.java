@@ -0,0 +1,47 @@
+package com.flashsale.bench;
+
+import com.flashsale.common.util.Money;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BigDecimal ↔ cents, done for every price read from or written to Redis.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private final BigDecimal amount = new BigDecimal("1299.90");
+    private final long cents = 129_990L;
+    private final String cachedPrice = "129990";
+
+    @Benchmark
+    public long toCents() {
+        return Money.toCents(amount);
+    }
+
+    @Benchmark
+    public BigDecimal fromCents() {
+        return Money.fromCents(cents);
+    }
+
+    @Benchmark
+    public BigDecimal fromCachedString() {
+        // As FlashSaleService reads the fs:fsp:{id}:price value
+        return Money.fromCents(Long.parseLong(cachedPrice));
+    }
+}
@@ -0,0 +1,64 @@
+package com.flashsale.bench;
+
+import com.flashsale.flashsale.event.PurchaseEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Publishing the PurchaseEvent at the end of a successful purchase, through a real Spring
+ * context with an @EventListener. The listener runs inline here; in the API it is @Async, so
+ * this measures event creation and listener lookup but not the executor hand-off.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PurchaseEventBenchmark {
+
+    public static class Listener {
+
+        Blackhole blackhole;
+
+        @EventListener
+        public void onPurchaseEvent(PurchaseEvent event) {
+            blackhole.consume(event.getOrderNo());
+        }
+    }
+
+    private final BigDecimal salePrice = new BigDecimal("9990.00");
+    private AnnotationConfigApplicationContext context;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        context = new AnnotationConfigApplicationContext(Listener.class);
+        context.getBean(Listener.class).blackhole = blackhole;
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public void publish() {
+        context.publishEvent(new PurchaseEvent(this, 123_456L, 42L, salePrice,
+                "FS-20260115-123456-42-4F0C1C7E", null, System.nanoTime(), 1L, null));
+    }
+}
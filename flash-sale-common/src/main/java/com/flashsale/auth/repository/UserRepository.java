@@ -2,6 +2,10 @@ package com.flashsale.auth.repository;
 
 import com.flashsale.auth.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Optional;
 
@@ -10,4 +14,14 @@ public interface UserRepository extends JpaRepository<User, Long> {
     Optional<User> findByEmail(String email);
 
     Optional<User> findByPhone(String phone);
+
+    /**
+     * Swap in a re-hashed password unless it was changed (e.g. reset) in the meantime.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :userId AND u.password = :oldHash")
+    int updatePasswordIfUnchanged(@Param("userId") Long userId,
+                                  @Param("oldHash") String oldHash,
+                                  @Param("newHash") String newHash);
 }
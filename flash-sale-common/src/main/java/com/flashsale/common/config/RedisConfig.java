@@ -1,5 +1,11 @@
 package com.flashsale.common.config;
 
+import io.lettuce.core.resource.NettyCustomizer;
+import io.netty.channel.Channel;
+import io.netty.handler.flush.FlushConsolidationHandler;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.ClientResourcesBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -21,4 +27,21 @@ public class RedisConfig {
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Auto-flush batching on the multiplexed connections: Lettuce flushes the socket after every
+     * command, so under load the flushes of commands written in the same event-loop pass are
+     * merged into one write syscall (at most {@code max-batch} commands apart).
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.redis.flush-consolidation.enabled", havingValue = "true", matchIfMissing = true)
+    public ClientResourcesBuilderCustomizer flushConsolidation(
+            @Value("${app.redis.flush-consolidation.max-batch:256}") int maxBatch) {
+        return builder -> builder.nettyCustomizer(new NettyCustomizer() {
+            @Override
+            public void afterChannelInitialized(Channel channel) {
+                channel.pipeline().addFirst(new FlushConsolidationHandler(maxBatch, true));
+            }
+        });
+    }
 }
@@ -0,0 +1,36 @@
+package com.flashsale.common.datasource;
+
+import java.util.function.Supplier;
+
+/**
+ * Opt-in replica reads. Repository calls made inside {@link #read} use the read-only replica
+ * pool when one is configured and in sync (see {@link ReadWriteRoutingDataSource}); everything
+ * else, and anything inside a read-write transaction, uses the primary.
+ * <p>
+ * Opt-in rather than keyed on read-only transactions: Spring Data runs every finder read-only,
+ * so that would also move balance and order reads, which must not be stale. Use it only for
+ * reads that tolerate app.datasource.replica.max-lag-seconds of staleness.
+ */
+public final class ReadReplica {
+
+    private static final ThreadLocal<Boolean> REQUESTED = new ThreadLocal<>();
+
+    private ReadReplica() {
+    }
+
+    public static <T> T read(Supplier<T> query) {
+        if (REQUESTED.get() != null) {
+            return query.get();
+        }
+        REQUESTED.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            REQUESTED.remove();
+        }
+    }
+
+    static boolean requested() {
+        return REQUESTED.get() != null;
+    }
+}
@@ -0,0 +1,76 @@
+package com.flashsale.common.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Primary or replica per connection: the replica only for {@link ReadReplica#read} outside a
+ * read-write transaction, and only while {@link ReplicaLagMonitor} reports it in sync. If the
+ * replica can't hand out a connection, the read falls back to the primary.
+ * <p>
+ * Sits behind a LazyConnectionDataSourceProxy, so the choice is made at the first statement,
+ * once the transaction (and its read-only flag) has been set up.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target { PRIMARY, REPLICA }
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final ReplicaLagMonitor lagMonitor;
+    private final Counter replicaReads;
+    private final Counter fallbacks;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                      MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.replica = replica;
+        this.lagMonitor = lagMonitor;
+        this.replicaReads = Counter.builder("db.replica.reads").register(meterRegistry);
+        this.fallbacks = Counter.builder("db.replica.fallback").register(meterRegistry);
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!ReadReplica.requested()) {
+            return Target.PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return Target.PRIMARY;
+        }
+        if (!lagMonitor.inSync()) {
+            fallbacks.increment();
+            return Target.PRIMARY;
+        }
+        return Target.REPLICA;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        if (target != replica) {
+            return target.getConnection();
+        }
+        try {
+            Connection connection = replica.getConnection();
+            replicaReads.increment();
+            return connection;
+        } catch (SQLException e) {
+            lagMonitor.markUnreachable(e);
+            fallbacks.increment();
+            return primary.getConnection();
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.flashsale.common.datasource;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Replication lag of the replica, polled with SHOW REPLICA STATUS (MySQL 8.0.22+). The replica
+ * is in sync while Seconds_Behind_Source is at most max-lag-seconds; stopped replication
+ * (NULL), a server that isn't a replica (no row) or a failed check all count as out of sync,
+ * so reads go to the primary until a check says otherwise.
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+
+    private static final long UNKNOWN = -1;
+
+    private final JdbcTemplate replica;
+    private final long maxLagSeconds;
+    private volatile long lagSeconds = UNKNOWN;
+    private volatile boolean inSync;
+
+    public ReplicaLagMonitor(DataSource replica, long maxLagSeconds, MeterRegistry meterRegistry) {
+        this.replica = new JdbcTemplate(replica);
+        this.replica.setQueryTimeout(1);
+        this.maxLagSeconds = maxLagSeconds;
+        Gauge.builder("db.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Seconds behind the primary, -1 if unknown").baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    public boolean inSync() {
+        return inSync;
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replica.lag-check-ms:1000}")
+    public void check() {
+        long lag;
+        try {
+            Long status = replica.query("SHOW REPLICA STATUS", ReplicaLagMonitor::lagOf);
+            lag = status != null ? status : UNKNOWN;
+        } catch (DataAccessException e) {
+            log.debug("Replica lag check failed: {}", e.getMessage());
+            lag = UNKNOWN;
+        }
+        update(lag, null);
+    }
+
+    /**
+     * The replica refused a connection; stay off it until the next successful check.
+     */
+    void markUnreachable(SQLException e) {
+        update(UNKNOWN, e.getMessage());
+    }
+
+    private void update(long lag, String reason) {
+        lagSeconds = lag;
+        boolean now = lag != UNKNOWN && lag <= maxLagSeconds;
+        if (now != inSync) {
+            inSync = now;
+            if (now) {
+                log.info("Replica in sync ({}s behind): replica reads resumed", lag);
+            } else {
+                log.warn("Replica out of sync ({}): replica reads go to the primary",
+                        reason != null ? reason : lag == UNKNOWN ? "lag unknown" : lag + "s behind");
+            }
+        }
+    }
+
+    private static Long lagOf(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return null;
+        }
+        long lag = rs.getLong("Seconds_Behind_Source");
+        return rs.wasNull() ? null : lag;
+    }
+}
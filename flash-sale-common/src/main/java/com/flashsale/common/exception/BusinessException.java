@@ -15,4 +15,18 @@ public class BusinessException extends RuntimeException {
     public BusinessException(String message) {
         this(400, message);
     }
+
+    protected BusinessException(int code, String message, Throwable cause) {
+        super(message, cause);
+        this.code = code;
+    }
+
+    /**
+     * For expected, high-volume outcomes that are thrown as shared instances: no stack trace,
+     * no suppressed exceptions.
+     */
+    protected BusinessException(int code, String message, boolean writableStackTrace) {
+        super(message, null, false, writableStackTrace);
+        this.code = code;
+    }
 }
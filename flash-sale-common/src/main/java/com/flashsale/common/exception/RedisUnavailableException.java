@@ -0,0 +1,52 @@
+package com.flashsale.common.exception;
+
+import lombok.Getter;
+
+/**
+ * Redis can't serve the request right now: the circuit breaker is open, too many Redis calls
+ * are already in flight, or the call itself timed out or lost its connection (see RedisGuard).
+ * Answered as 503 so clients back off and retry. A failed purchase call may still have been
+ * applied by Redis: retried with the same Idempotency-Key it returns the original order, which
+ * is sent to persistence again if the failed request never did. Without a key the retry only
+ * sees "already purchased", so clients that retry purchases must send one.
+ * <p>
+ * Fast-fail rejections are shared, stackless instances, since an open breaker turns every
+ * request into one; failed calls get their own instance with the Redis error as the cause.
+ */
+public final class RedisUnavailableException extends BusinessException {
+
+    public static final String MESSAGE = "Sale temporarily unavailable — please retry shortly";
+
+    public enum Reason { OPEN, SATURATED, FAILED }
+
+    private static final RedisUnavailableException OPEN = new RedisUnavailableException(Reason.OPEN);
+    private static final RedisUnavailableException SATURATED = new RedisUnavailableException(Reason.SATURATED);
+
+    @Getter
+    private final Reason reason;
+
+    private RedisUnavailableException(Reason reason) {
+        super(503, MESSAGE, false);
+        this.reason = reason;
+    }
+
+    private RedisUnavailableException(Throwable cause) {
+        super(503, MESSAGE, cause);
+        this.reason = Reason.FAILED;
+    }
+
+    /** The breaker is open (or half-open with all its probes taken). */
+    public static RedisUnavailableException open() {
+        return OPEN;
+    }
+
+    /** The bulkhead is full. */
+    public static RedisUnavailableException saturated() {
+        return SATURATED;
+    }
+
+    /** The call was made and failed for infrastructure reasons. */
+    public static RedisUnavailableException failed(Throwable cause) {
+        return new RedisUnavailableException(cause);
+    }
+}
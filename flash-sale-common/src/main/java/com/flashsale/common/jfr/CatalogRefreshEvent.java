@@ -0,0 +1,32 @@
+package com.flashsale.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One FlashSaleCacheService catalog refresh (worker schedule or API cache-miss load).
+ */
+@Name("com.flashsale.CatalogRefresh")
+@Label("Catalog Refresh")
+@Category({"Flash Sale", "Cache"})
+@StackTrace(false)
+public class CatalogRefreshEvent extends Event {
+
+    @Label("Version")
+    public long version;
+
+    @Label("Changed")
+    public boolean changed;
+
+    @Label("Item Hashes Written")
+    public int itemsWritten;
+
+    @Label("Active Sales")
+    public int activeSales;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
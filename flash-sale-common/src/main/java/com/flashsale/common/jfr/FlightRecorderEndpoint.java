@@ -0,0 +1,36 @@
+package com.flashsale.common.jfr;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint "jfr": read for the recording's state, write to dump it to a file on the
+ * node. The worker exposes it over HTTP on its management port, the API over JMX only.
+ */
+@Component
+@Endpoint(id = "jfr")
+@ConditionalOnProperty(name = "app.jfr.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class FlightRecorderEndpoint {
+
+    private final FlightRecorderService flightRecorderService;
+
+    @ReadOperation
+    public Map<String, Object> recording() {
+        return Map.of(
+                "name", FlightRecorderService.RECORDING_NAME,
+                "maxAge", flightRecorderService.maxAge().toString(),
+                "sizeBytes", flightRecorderService.sizeBytes());
+    }
+
+    @WriteOperation
+    public Map<String, String> dump() {
+        return Map.of("file", flightRecorderService.dump().toString());
+    }
+}
@@ -0,0 +1,84 @@
+package com.flashsale.common.jfr;
+
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Always-on rolling JFR recording named "flash-sale": the JDK "default" settings (about 1%
+ * overhead) plus the com.flashsale events, kept for app.jfr.max-age / app.jfr.max-size.
+ * Dump it through the jfr actuator endpoint, or with jcmd &lt;pid&gt; JFR.dump name=flash-sale.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.jfr.enabled", havingValue = "true")
+public class FlightRecorderService {
+
+    public static final String RECORDING_NAME = "flash-sale";
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+    private final Recording recording;
+    private final Path dumpDir;
+
+    public FlightRecorderService(
+            @Value("${app.jfr.max-age:15m}") Duration maxAge,
+            @Value("${app.jfr.max-size-mb:256}") long maxSizeMb,
+            @Value("${app.jfr.purchase-threshold:1ms}") Duration purchaseThreshold,
+            @Value("${app.jfr.dump-dir:${java.io.tmpdir}}") String dumpDir
+    ) throws IOException, ParseException {
+        this.dumpDir = Path.of(dumpDir);
+        this.recording = new Recording(Configuration.getConfiguration("default"));
+        recording.setName(RECORDING_NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(maxAge);
+        recording.setMaxSize(maxSizeMb * 1024 * 1024);
+        // Only slow purchases are worth a record each; persistence and refreshes are rarer
+        recording.enable(PurchaseAttemptEvent.class).withThreshold(purchaseThreshold);
+        recording.enable(OrderPersistEvent.class);
+        recording.enable(CatalogRefreshEvent.class);
+        recording.start();
+        log.info("JFR recording '{}' started (maxAge={}, maxSize={}MB, purchase threshold={})",
+                RECORDING_NAME, maxAge, maxSizeMb, purchaseThreshold);
+    }
+
+    /**
+     * Write the retained window to a new file in app.jfr.dump-dir and return its path.
+     */
+    public Path dump() {
+        try {
+            Files.createDirectories(dumpDir);
+            Path file = dumpDir.resolve(RECORDING_NAME + "-" + LocalDateTime.now().format(FILE_TIME) + ".jfr");
+            recording.dump(file);
+            log.info("JFR recording dumped to {}", file);
+            return file;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public Duration maxAge() {
+        return recording.getMaxAge();
+    }
+
+    public long sizeBytes() {
+        return recording.getSize();
+    }
+
+    @PreDestroy
+    void stop() {
+        recording.close();
+    }
+}
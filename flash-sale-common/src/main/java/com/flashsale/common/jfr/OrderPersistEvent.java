@@ -0,0 +1,37 @@
+package com.flashsale.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One persistOrder attempt; the event duration is the transaction itself, queueTime is how long
+ * the PurchaseEvent waited for a persistence thread.
+ */
+@Name("com.flashsale.OrderPersist")
+@Label("Order Persist")
+@Category({"Flash Sale", "Persistence"})
+@StackTrace(false)
+public class OrderPersistEvent extends Event {
+
+    @Label("Order No")
+    public String orderNo;
+
+    @Label("Flash Sale Product Id")
+    public long flashSaleProductId;
+
+    @Label("Queue Time")
+    @Description("From the purchase script's success to the start of this attempt")
+    @Timespan
+    public long queueTime;
+
+    @Label("Attempt")
+    public int attempt;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,50 @@
+package com.flashsale.common.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * One /purchase request through FlashSaleService, with the time spent in each stage and the
+ * fs_purchase_v1 result code (0 if it was rejected before the script ran).
+ */
+@Name("com.flashsale.PurchaseAttempt")
+@Label("Purchase Attempt")
+@Category({"Flash Sale", "Purchase"})
+@StackTrace(false)
+public class PurchaseAttemptEvent extends Event {
+
+    @Label("User Id")
+    public long userId;
+
+    @Label("Flash Sale Product Id")
+    public long flashSaleProductId;
+
+    @Label("Script Result")
+    @Description("fs_purchase_v1 result code; 0 if the request never reached the script")
+    public int resultCode;
+
+    @Label("Balance Warm-up")
+    @Timespan
+    public long balanceTime;
+
+    @Label("Sale Window Check")
+    @Timespan
+    public long windowTime;
+
+    @Label("Script")
+    @Timespan
+    public long scriptTime;
+
+    @Label("Price Read")
+    @Timespan
+    public long priceTime;
+
+    @Label("Event Publish")
+    @Timespan
+    public long publishTime;
+}
@@ -0,0 +1,54 @@
+package com.flashsale.common.redis;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A family of keys {@code prefix + id + suffix} (e.g. fs:fsp:{id}:stock) with the constant parts
+ * encoded once, so a key is built as one exactly sized byte[] with no String or builder behind it.
+ */
+public final class KeyPrefix {
+
+    private final String prefix;
+    private final String suffix;
+    private final byte[] prefixBytes;
+    private final byte[] suffixBytes;
+
+    private KeyPrefix(String prefix, String suffix) {
+        this.prefix = prefix;
+        this.suffix = suffix;
+        this.prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+        this.suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public static KeyPrefix of(String prefix, String suffix) {
+        return new KeyPrefix(prefix, suffix);
+    }
+
+    public byte[] key(long id) {
+        return key(id, null);
+    }
+
+    /**
+     * The key for {@code id} with {@code tail} appended after the suffix, e.g. the day of
+     * fs:user:{id}:daily:{day}.
+     */
+    public byte[] key(long id, byte[] tail) {
+        int idSize = LongCodec.size(id);
+        int tailSize = tail != null ? tail.length : 0;
+        byte[] key = new byte[prefixBytes.length + idSize + suffixBytes.length + tailSize];
+        System.arraycopy(prefixBytes, 0, key, 0, prefixBytes.length);
+        LongCodec.write(id, key, prefixBytes.length, idSize);
+        System.arraycopy(suffixBytes, 0, key, prefixBytes.length + idSize, suffixBytes.length);
+        if (tail != null) {
+            System.arraycopy(tail, 0, key, key.length - tailSize, tailSize);
+        }
+        return key;
+    }
+
+    /**
+     * The key as a String, for the String-keyed RedisTemplate and logs.
+     */
+    public String name(long id) {
+        return prefix + id + suffix;
+    }
+}
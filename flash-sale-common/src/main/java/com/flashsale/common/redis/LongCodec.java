@@ -0,0 +1,95 @@
+package com.flashsale.common.redis;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Longs as Redis stores integers: ASCII decimal, so INCRBY/DECRBY and the Lua scripts work on
+ * them. Encodes and decodes straight between long and byte[], without a String in between.
+ */
+public final class LongCodec {
+
+    private static final byte[] MIN_VALUE = String.valueOf(Long.MIN_VALUE).getBytes(StandardCharsets.US_ASCII);
+
+    private LongCodec() {
+    }
+
+    public static byte[] encode(long value) {
+        if (value == Long.MIN_VALUE) {
+            return MIN_VALUE.clone();
+        }
+        byte[] out = new byte[size(value)];
+        write(value, out, 0, out.length);
+        return out;
+    }
+
+    /**
+     * Parses an ASCII decimal; throws NumberFormatException like Long.parseLong.
+     */
+    public static long decode(byte[] bytes) {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    static long decode(byte[] bytes, int offset, int length) {
+        if (length == 0) {
+            throw new NumberFormatException("Empty integer");
+        }
+        boolean negative = bytes[offset] == '-';
+        int i = negative || bytes[offset] == '+' ? offset + 1 : offset;
+        int end = offset + length;
+        if (i == end || length > 20) {
+            throw invalid(bytes, offset, length);
+        }
+        // Accumulate negatively so Long.MIN_VALUE fits
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9 || result < (Long.MIN_VALUE + digit) / 10) {
+                throw invalid(bytes, offset, length);
+            }
+            result = result * 10 - digit;
+        }
+        if (!negative && result == Long.MIN_VALUE) {
+            throw invalid(bytes, offset, length);
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Number of bytes {@code value} encodes to.
+     */
+    static int size(long value) {
+        if (value == Long.MIN_VALUE) {
+            return MIN_VALUE.length;
+        }
+        int size = value < 0 ? 2 : 1;
+        long rest = Math.abs(value);
+        while (rest >= 10) {
+            rest /= 10;
+            size++;
+        }
+        return size;
+    }
+
+    /**
+     * Write {@code value} into {@code out[offset, offset + size)}, size being {@link #size(long)}.
+     */
+    static void write(long value, byte[] out, int offset, int size) {
+        if (value == Long.MIN_VALUE) {
+            System.arraycopy(MIN_VALUE, 0, out, offset, MIN_VALUE.length);
+            return;
+        }
+        long rest = Math.abs(value);
+        int i = offset + size;
+        do {
+            out[--i] = (byte) ('0' + rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        if (value < 0) {
+            out[--i] = '-';
+        }
+    }
+
+    private static NumberFormatException invalid(byte[] bytes, int offset, int length) {
+        return new NumberFormatException("Not an integer: " + new String(bytes, offset, length, StandardCharsets.US_ASCII));
+    }
+}
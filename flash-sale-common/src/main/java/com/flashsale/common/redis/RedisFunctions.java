@@ -0,0 +1,217 @@
+package com.flashsale.common.redis;
+
+import io.lettuce.core.ScriptOutputType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The "flashsale" Redis Functions library (scripts/flashsale_functions.lua) and calls into it.
+ * <p>
+ * The worker owns the library: {@link #install()} loads it if missing and replaces an older
+ * LIBRARY_VERSION atomically, never a newer one (so a rolling deploy can't downgrade it).
+ * Callers use {@link #call}/{@link #callReadOnly}; the library survives restarts and failovers
+ * with the dataset. If a called function is missing anyway (library flushed, or older than this
+ * build because the API rolled out before the worker), the first failing call on a node
+ * installs the bundled version — never a downgrade — and retries.
+ * <p>
+ * Calls go over the shared connection of {@link TypedRedis}, under its {@link RedisGuard}. {@link #call} returns the raw
+ * reply for the hot path (bulk strings as byte[], integers as Long, nil as null, arrays as
+ * List); {@link #callReadOnly} decodes bulk strings to String.
+ */
+@Slf4j
+@Component
+public class RedisFunctions {
+
+    public static final String LIBRARY = "flashsale";
+    public static final String PURCHASE = "fs_purchase_v1";
+    public static final String ORDER_PERSISTED = "fs_order_persisted_v1";
+    public static final String ACTIVE_ITEMS = "fs_active_items_v1";
+    private static final String VERSION = "fs_library_version";
+
+    private static final String SOURCE_PATH = "scripts/flashsale_functions.lua";
+    private static final Pattern VERSION_PATTERN = Pattern.compile("local LIBRARY_VERSION = (\\d+)");
+
+    private final TypedRedis typedRedis;
+    private final String source;
+    private final long bundledVersion;
+    /** Not a monitor: it is held across Redis I/O, which would pin a virtual thread's carrier. */
+    private final ReentrantLock loadLock = new ReentrantLock();
+
+    public RedisFunctions(TypedRedis typedRedis) {
+        this.typedRedis = typedRedis;
+        this.source = readSource();
+        Matcher matcher = VERSION_PATTERN.matcher(source);
+        if (!matcher.find()) {
+            throw new IllegalStateException(SOURCE_PATH + " does not declare LIBRARY_VERSION");
+        }
+        this.bundledVersion = Long.parseLong(matcher.group(1));
+    }
+
+    public long bundledVersion() {
+        return bundledVersion;
+    }
+
+    /**
+     * LIBRARY_VERSION of the loaded library, or -1 if none is loaded.
+     */
+    public long loadedVersion() {
+        try {
+            Long version = typedRedis.read(commands ->
+                    commands.<Long>fcallReadOnly(VERSION, ScriptOutputType.INTEGER, new byte[0][]));
+            return version != null ? version : -1;
+        } catch (DataAccessException e) {
+            if (hasMessage(e, "Function not found")) {
+                return -1;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Make the loaded library at least the bundled version. Returns the version now loaded.
+     */
+    public long install() {
+        long loaded = loadedVersion();
+        if (loaded == bundledVersion) {
+            return loaded;
+        }
+        if (loaded > bundledVersion) {
+            log.warn("Redis has {} library version {}, newer than this build's {}; leaving it",
+                    LIBRARY, loaded, bundledVersion);
+            return loaded;
+        }
+        load(loaded >= 0);
+        log.info("Loaded {} library version {} into Redis (was {})", LIBRARY, bundledVersion,
+                loaded >= 0 ? loaded : "absent");
+        return bundledVersion;
+    }
+
+    /**
+     * FCALL; for functions that write. Keys and args are bytes so the hot path can build them
+     * without Strings (see {@link KeyPrefix}, {@link LongCodec}); the reply is raw.
+     */
+    public List<Object> call(String function, byte[][] keys, byte[]... args) {
+        try {
+            return fcall(function, keys, args);
+        } catch (DataAccessException e) {
+            if (!hasMessage(e, "Function not found")) {
+                throw e;
+            }
+            loadIfOutdated();
+            return fcall(function, keys, args);
+        }
+    }
+
+    /**
+     * FCALL_RO; for no-writes functions (may be served by a replica). Bulk strings in the
+     * reply are decoded to String.
+     */
+    @SuppressWarnings("unchecked")
+    public List<Object> callReadOnly(String function, List<String> keys, List<String> args) {
+        byte[][] keyBytes = bytes(keys);
+        byte[][] argBytes = bytes(args);
+        try {
+            return (List<Object>) decode(fcallReadOnly(function, keyBytes, argBytes));
+        } catch (DataAccessException e) {
+            if (!hasMessage(e, "Function not found")) {
+                throw e;
+            }
+            loadIfOutdated();
+            return (List<Object>) decode(fcallReadOnly(function, keyBytes, argBytes));
+        }
+    }
+
+    /**
+     * A function this build calls is missing: the library is absent, or older than the bundled
+     * one (this API node was deployed before the worker upgraded it). One caller per node
+     * installs the bundled version, as the worker would; a newer library is left alone, so an
+     * API node can't roll back what the worker installed.
+     */
+    private void loadIfOutdated() {
+        loadLock.lock();
+        try {
+            if (loadedVersion() >= bundledVersion) {
+                return;
+            }
+            log.warn("{} library in Redis is missing or older than this build's; installing version {}",
+                    LIBRARY, bundledVersion);
+            try {
+                install();
+            } catch (DataAccessException e) {
+                // Loaded concurrently by another node
+                if (!hasMessage(e, "already exists")) {
+                    throw e;
+                }
+            }
+        } finally {
+            loadLock.unlock();
+        }
+    }
+
+    private void load(boolean replace) {
+        typedRedis.write(commands -> commands.functionLoad(source, replace));
+    }
+
+    private List<Object> fcall(String function, byte[][] keys, byte[][] args) {
+        return typedRedis.write(commands -> commands.<List<Object>>fcall(function, ScriptOutputType.MULTI, keys, args));
+    }
+
+    private List<Object> fcallReadOnly(String function, byte[][] keys, byte[][] args) {
+        return typedRedis.read(commands -> commands.<List<Object>>fcallReadOnly(function, ScriptOutputType.MULTI, keys, args));
+    }
+
+    private static byte[][] bytes(List<String> values) {
+        byte[][] bytes = new byte[values.size()][];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        return bytes;
+    }
+
+    private static Object decode(Object value) {
+        if (value instanceof byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+        if (value instanceof List<?> list) {
+            List<Object> decoded = new ArrayList<>(list.size());
+            for (Object item : list) {
+                decoded.add(decode(item));
+            }
+            return decoded;
+        }
+        return value;
+    }
+
+    /**
+     * Redis errors arrive as the cause of a generic "Error in execution".
+     */
+    private static boolean hasMessage(DataAccessException e, String text) {
+        Throwable cause = e;
+        while (cause != null) {
+            if (cause.getMessage() != null && cause.getMessage().contains(text)) {
+                return true;
+            }
+            cause = cause.getCause();
+        }
+        return false;
+    }
+
+    private static String readSource() {
+        try {
+            return new ClassPathResource(SOURCE_PATH).getContentAsString(StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + SOURCE_PATH, e);
+        }
+    }
+}
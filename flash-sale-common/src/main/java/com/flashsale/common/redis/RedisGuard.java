@@ -0,0 +1,275 @@
+package com.flashsale.common.redis;
+
+import com.flashsale.common.exception.RedisUnavailableException;
+import io.lettuce.core.RedisCommandExecutionException;
+import io.lettuce.core.RedisException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Fault isolation for request-path Redis calls, so a Redis stall or failover costs a few
+ * fast 503s instead of every request thread waiting out the command timeout.
+ * <ul>
+ *   <li>Bulkhead: at most max-concurrent calls in flight per JVM; beyond that, callers are
+ *       rejected at once instead of queueing behind a slow Redis.</li>
+ *   <li>Circuit breaker: opens when at least failure-rate-threshold of the last window-size
+ *       calls (and at least minimum-calls) failed for infrastructure reasons — timeouts, lost
+ *       connections; an error reply from Redis is an answer, not a failure. While open every
+ *       call is rejected; after open-ms, half-open-probes real calls go through as probes: all
+ *       succeeding closes the breaker, any failing reopens it.</li>
+ *   <li>Adaptive read timeout: smoothed latency plus four deviations, as TCP sizes its
+ *       retransmission timeout, clamped to [min-timeout-ms, max-timeout-ms]. It follows a
+ *       uniformly slower Redis instead of failing it, but cuts off a stall early.</li>
+ * </ul>
+ * Rejections and failures surface as {@link RedisUnavailableException} (503).
+ */
+@Slf4j
+@Component
+public class RedisGuard {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final Semaphore bulkhead;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private final long minTimeoutNanos;
+    private final long maxTimeoutNanos;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.CLOSED);
+    private volatile long openedAt;
+    private volatile Window window;
+    private final AtomicInteger probesStarted = new AtomicInteger();
+    private final AtomicInteger probesSucceeded = new AtomicInteger();
+
+    // Latency estimate; concurrent updates may overwrite each other, which only loses samples
+    private volatile long smoothedNanos;
+    private volatile long deviationNanos;
+
+    private final Counter rejectedOpen;
+    private final Counter rejectedSaturated;
+    private final Counter failures;
+
+    public RedisGuard(
+            MeterRegistry meterRegistry,
+            @Value("${app.redis.guard.max-concurrent:128}") int maxConcurrent,
+            @Value("${app.redis.guard.window-size:100}") int windowSize,
+            @Value("${app.redis.guard.minimum-calls:20}") int minimumCalls,
+            @Value("${app.redis.guard.failure-rate-threshold:0.5}") double failureRateThreshold,
+            @Value("${app.redis.guard.open-ms:5000}") long openMillis,
+            @Value("${app.redis.guard.half-open-probes:5}") int halfOpenProbes,
+            @Value("${app.redis.guard.min-timeout-ms:100}") long minTimeoutMillis,
+            @Value("${app.redis.guard.max-timeout-ms:1000}") long maxTimeoutMillis
+    ) {
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.halfOpenProbes = halfOpenProbes;
+        this.minTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(minTimeoutMillis);
+        this.maxTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(minTimeoutMillis, maxTimeoutMillis));
+        this.window = new Window(windowSize);
+
+        this.rejectedOpen = Counter.builder("redis.guard.rejected").tag("reason", "open").register(meterRegistry);
+        this.rejectedSaturated = Counter.builder("redis.guard.rejected").tag("reason", "saturated").register(meterRegistry);
+        this.failures = Counter.builder("redis.guard.failures").register(meterRegistry);
+        Gauge.builder("redis.guard.state", state, s -> s.get().ordinal())
+                .description("0 closed, 1 open, 2 half-open").register(meterRegistry);
+        Gauge.builder("redis.guard.in.flight", bulkhead, b -> maxConcurrent - b.availablePermits()).register(meterRegistry);
+        Gauge.builder("redis.guard.read.timeout", this, g -> TimeUnit.NANOSECONDS.toMillis(g.readTimeoutNanos()))
+                .baseUnit("milliseconds").register(meterRegistry);
+    }
+
+    /**
+     * Run a Redis call under the breaker and bulkhead. Its own timeout applies; see
+     * {@link #readTimeoutNanos()} for callers that can choose one.
+     */
+    public <T> T call(Supplier<T> action) {
+        boolean probe = acquire();
+        boolean failed = false;
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            failed = isInfrastructureFailure(e);
+            throw failed ? RedisUnavailableException.failed(e) : e;
+        } finally {
+            release(probe, failed);
+        }
+    }
+
+    /**
+     * Feed the latency of a successful read into the timeout estimate.
+     */
+    public void observe(long latencyNanos) {
+        long smoothed = smoothedNanos;
+        if (smoothed == 0) {
+            smoothedNanos = latencyNanos;
+            deviationNanos = latencyNanos / 2;
+            return;
+        }
+        long error = latencyNanos - smoothed;
+        smoothedNanos = smoothed + error / 8;
+        deviationNanos += (Math.abs(error) - deviationNanos) / 4;
+    }
+
+    public long readTimeoutNanos() {
+        long smoothed = smoothedNanos;
+        if (smoothed == 0) {
+            // No samples yet (cold JVM, cold connection): start at the ceiling, as TCP starts its RTO at 1s
+            return maxTimeoutNanos;
+        }
+        long timeout = smoothed + 4 * deviationNanos;
+        return Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, timeout));
+    }
+
+    public State state() {
+        return state.get();
+    }
+
+    /**
+     * Returns true if the call is a half-open probe; throws if it may not run at all.
+     */
+    private boolean acquire() {
+        boolean probe = admit();
+        if (!bulkhead.tryAcquire()) {
+            if (probe) {
+                probesStarted.decrementAndGet();
+            }
+            rejectedSaturated.increment();
+            throw RedisUnavailableException.saturated();
+        }
+        return probe;
+    }
+
+    private boolean admit() {
+        State current = state.get();
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if (current == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                rejectedOpen.increment();
+                throw RedisUnavailableException.open();
+            }
+            if (state.compareAndSet(State.OPEN, State.HALF_OPEN)) {
+                log.info("Redis circuit breaker half-open: probing with {} calls", halfOpenProbes);
+            }
+        }
+        if (state.get() == State.CLOSED) {
+            return false;
+        }
+        if (probesStarted.incrementAndGet() > halfOpenProbes) {
+            rejectedOpen.increment();
+            throw RedisUnavailableException.open();
+        }
+        return true;
+    }
+
+    private void release(boolean probe, boolean failed) {
+        bulkhead.release();
+        if (failed) {
+            failures.increment();
+        }
+        if (probe) {
+            if (failed) {
+                trip("a half-open probe failed");
+            } else if (probesSucceeded.incrementAndGet() >= halfOpenProbes
+                    && state.compareAndSet(State.HALF_OPEN, State.CLOSED)) {
+                window = new Window(windowSize);
+                log.info("Redis circuit breaker closed: {} probes succeeded", halfOpenProbes);
+            }
+            return;
+        }
+        Window current = window;
+        current.record(failed);
+        if (failed && state.get() == State.CLOSED && current.failing(minimumCalls, failureRateThreshold)) {
+            trip(current.failures() + " of the last " + current.calls() + " calls failed");
+        }
+    }
+
+    private void trip(String why) {
+        // Reset before publishing OPEN, so the next half-open round starts from zero
+        probesStarted.set(0);
+        probesSucceeded.set(0);
+        openedAt = System.nanoTime();
+        if (state.getAndSet(State.OPEN) != State.OPEN) {
+            log.warn("Redis circuit breaker open for {}ms: {}", TimeUnit.NANOSECONDS.toMillis(openNanos), why);
+        }
+    }
+
+    /**
+     * Timeouts and connection problems; not error replies, which Redis answered in time.
+     */
+    static boolean isInfrastructureFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            // Already counted by the nested call that threw it
+            if (cause instanceof RedisUnavailableException || cause instanceof RedisCommandExecutionException) {
+                return false;
+            }
+            if (cause instanceof RedisException
+                    || cause instanceof RedisConnectionFailureException
+                    || cause instanceof QueryTimeoutException
+                    || cause instanceof TimeoutException
+                    || cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Outcomes of the last {@code size} calls, as a ring of 0/1 with a running failure count.
+     * Replaced rather than cleared when the breaker closes, so late writers can't skew the new one.
+     */
+    private static final class Window {
+
+        private final AtomicIntegerArray outcomes;
+        private final AtomicLong recorded = new AtomicLong();
+        private final AtomicInteger failures = new AtomicInteger();
+
+        Window(int size) {
+            this.outcomes = new AtomicIntegerArray(size);
+        }
+
+        void record(boolean failed) {
+            int slot = (int) (recorded.getAndIncrement() % outcomes.length());
+            int outcome = failed ? 1 : 0;
+            int delta = outcome - outcomes.getAndSet(slot, outcome);
+            if (delta != 0) {
+                failures.addAndGet(delta);
+            }
+        }
+
+        long calls() {
+            return Math.min(recorded.get(), outcomes.length());
+        }
+
+        int failures() {
+            return failures.get();
+        }
+
+        boolean failing(int minimumCalls, double threshold) {
+            long calls = calls();
+            return calls >= minimumCalls && failures.get() >= calls * threshold;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.flashsale.common.redis;
+
+/**
+ * Keys shared by the API, the worker and the Functions library (scripts/flashsale_functions.lua).
+ */
+public final class RedisKeys {
+
+    /** Live stock of a flash sale product; decremented only by fs_purchase_v1. */
+    public static final KeyPrefix STOCK = KeyPrefix.of("fs:fsp:", ":stock");
+    /** Sale window in epoch millis (UTC) and sale price in cents, seeded by the worker. */
+    public static final KeyPrefix START = KeyPrefix.of("fs:fsp:", ":start");
+    public static final KeyPrefix END = KeyPrefix.of("fs:fsp:", ":end");
+    public static final KeyPrefix PRICE = KeyPrefix.of("fs:fsp:", ":price");
+
+    /** Wallet balance in cents, cache-aside from MySQL. */
+    public static final KeyPrefix BALANCE = KeyPrefix.of("fs:user:", ":balance");
+    /** Daily purchase flag; followed by the yyyyMMdd day. */
+    public static final KeyPrefix DAILY = KeyPrefix.of("fs:user:", ":daily:");
+    /** Recorded purchase outcome; followed by the client's Idempotency-Key. */
+    public static final KeyPrefix IDEMPOTENCY = KeyPrefix.of("fs:idem:", ":");
+
+    private RedisKeys() {
+    }
+}
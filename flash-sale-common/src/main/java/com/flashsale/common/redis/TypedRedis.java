@@ -0,0 +1,259 @@
+package com.flashsale.common.redis;
+
+import io.lettuce.core.AbstractRedisClient;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.SetArgs;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.output.ValueListOutput;
+import io.lettuce.core.protocol.CommandArgs;
+import io.lettuce.core.protocol.CommandType;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceExceptionConverter;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Typed Redis access for the hot paths, on one multiplexed byte[] connection shared by every
+ * thread of the JVM: no pool borrow per command, no serializer, no boxing through Object, and
+ * numbers go straight between long and bytes ({@link LongCodec}) under precomputed keys
+ * ({@link RedisKeys}). Concurrent commands are pipelined on the socket and their flushes
+ * coalesced (see RedisConfig#flushConsolidation).
+ * <p>
+ * The connection comes from the same Lettuce client as RedisTemplate's (same URI, timeouts
+ * and client resources, so command tracing applies) and reconnects on its own. Errors are
+ * translated to DataAccessException like the template's. Not for MULTI or blocking commands,
+ * which would hold up everyone sharing the connection; those stay on RedisTemplate.
+ * <p>
+ * Request paths go through {@link #read}/{@link #write}, guarded by {@link RedisGuard}: when
+ * Redis stalls they fail fast with RedisUnavailableException (503) instead of holding threads.
+ */
+@Slf4j
+@Component
+public class TypedRedis implements DisposableBean {
+
+    /** What {@link #getLong} and {@link #getLongs} return for a missing key. */
+    public static final long MISSING = Long.MIN_VALUE;
+
+    private final LettuceConnectionFactory connectionFactory;
+    private final RedisGuard guard;
+    private final LettuceExceptionConverter exceptionConverter = new LettuceExceptionConverter();
+    /** Not a monitor: connecting is I/O, which would pin a virtual thread's carrier. */
+    private final ReentrantLock connectLock = new ReentrantLock();
+    private volatile StatefulRedisConnection<byte[], byte[]> connection;
+
+    public TypedRedis(RedisConnectionFactory connectionFactory, RedisGuard guard) {
+        if (!(connectionFactory instanceof LettuceConnectionFactory lettuce)) {
+            throw new IllegalStateException("TypedRedis needs Lettuce, not " + connectionFactory.getClass().getName());
+        }
+        this.connectionFactory = lettuce;
+        this.guard = guard;
+    }
+
+    /**
+     * GET as a long, or {@link #MISSING}.
+     */
+    public long getLong(byte[] key) {
+        return decode(read(commands -> commands.get(key)));
+    }
+
+    /**
+     * MGET as longs, in key order; {@link #MISSING} for absent keys.
+     */
+    public long[] getLongs(byte[]... keys) {
+        List<byte[]> values = read(commands -> values(commands, keys));
+        long[] longs = new long[keys.length];
+        for (int i = 0; i < longs.length; i++) {
+            longs[i] = decode(values.get(i));
+        }
+        return longs;
+    }
+
+    public boolean exists(byte[] key) {
+        return read(commands -> commands.exists(key)) > 0;
+    }
+
+    /**
+     * SET NX EX in one command. Returns true if this call set it.
+     */
+    public boolean setIfAbsent(byte[] key, long value, long ttlSeconds) {
+        byte[] encoded = LongCodec.encode(value);
+        return "OK".equals(write(commands -> commands.set(key, encoded, SetArgs.Builder.nx().ex(ttlSeconds))));
+    }
+
+    /**
+     * ZSCORE, or null if the member is absent.
+     */
+    public Double score(byte[] key, byte[] member) {
+        return read(commands -> commands.zscore(key, member));
+    }
+
+    /**
+     * MGET without KeyValue wrappers: the values in key order, null for absent keys.
+     */
+    public static RedisFuture<List<byte[]>> values(RedisAsyncCommands<byte[], byte[]> commands, byte[]... keys) {
+        return commands.dispatch(CommandType.MGET, new ValueListOutput<>(ByteArrayCodec.INSTANCE),
+                new CommandArgs<>(ByteArrayCodec.INSTANCE).addKeys(keys));
+    }
+
+    /**
+     * HMGET without KeyValue wrappers: the values in field order, null for absent fields.
+     */
+    public static RedisFuture<List<byte[]>> hashValues(RedisAsyncCommands<byte[], byte[]> commands,
+                                                       byte[] key, byte[]... fields) {
+        return commands.dispatch(CommandType.HMGET, new ValueListOutput<>(ByteArrayCodec.INSTANCE),
+                new CommandArgs<>(ByteArrayCodec.INSTANCE).addKey(key).addKeys(fields));
+    }
+
+    /**
+     * Read-only commands on the request path, under {@link RedisGuard}: rejected while the
+     * breaker is open or the bulkhead full, and cut off at the adaptive read timeout. Commands
+     * issued together (e.g. combined with thenCombine) share one round trip and one timeout.
+     */
+    public <T> T read(Function<RedisAsyncCommands<byte[], byte[]>, ? extends CompletionStage<T>> commands) {
+        return guard.call(() -> {
+            long start = System.nanoTime();
+            long timeoutNanos = guard.readTimeoutNanos();
+            try {
+                T value = await(commands.apply(connection().async()), timeoutNanos);
+                guard.observe(System.nanoTime() - start);
+                return value;
+            } catch (QueryTimeoutException e) {
+                // Back off like TCP: a timeout roughly doubles the next one, so a Redis that is
+                // uniformly slower stretches the timeout instead of tripping the breaker
+                guard.observe(2 * timeoutNanos);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Reads that finish a write which already went through, such as the price of a purchase
+     * the script accepted. Giving up would drop the order, so these bypass the guard and wait
+     * the full command timeout.
+     */
+    public <T> T readAfterWrite(Function<RedisAsyncCommands<byte[], byte[]>, ? extends CompletionStage<T>> commands) {
+        try {
+            return await(commands.apply(connection().async()), commandTimeoutNanos());
+        } catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * Commands that write, under {@link RedisGuard} like {@link #read} but with the full command
+     * timeout: giving up on a write early doesn't stop Redis from applying it, it only hides
+     * the outcome (a purchase that went through, with no order to show for it until a retry
+     * with the same Idempotency-Key replays it).
+     */
+    public <T> T write(Function<RedisAsyncCommands<byte[], byte[]>, ? extends CompletionStage<T>> commands) {
+        return guard.call(() -> await(commands.apply(connection().async()), commandTimeoutNanos()));
+    }
+
+    /**
+     * Asynchronous commands on the shared connection, for batches off the request path (the
+     * worker): issue them all, then {@link #await} each. They go out back to back, so a batch
+     * costs about one round trip. Not guarded; request paths use {@link #read}/{@link #write}.
+     */
+    public RedisAsyncCommands<byte[], byte[]> async() {
+        try {
+            return connection().async();
+        } catch (RuntimeException e) {
+            throw translate(e);
+        }
+    }
+
+    /**
+     * The future's result, within the command timeout.
+     */
+    public <T> T await(RedisFuture<T> future) {
+        return await(future, commandTimeoutNanos());
+    }
+
+    /**
+     * Lettuce exceptions as Spring's DataAccessException hierarchy; anything else as is.
+     */
+    public RuntimeException translate(RuntimeException e) {
+        if (e instanceof DataAccessException) {
+            return e;
+        }
+        DataAccessException translated = exceptionConverter.convert(e);
+        return translated != null ? translated : e;
+    }
+
+    private <T> T await(CompletionStage<T> stage, long timeoutNanos) {
+        CompletableFuture<T> future = stage.toCompletableFuture();
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new QueryTimeoutException("Redis command timed out after "
+                    + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof RuntimeException runtime ? translate(runtime)
+                    : new RedisSystemException("Redis command failed", cause);
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new RedisSystemException("Interrupted waiting for Redis", e);
+        }
+    }
+
+    private long commandTimeoutNanos() {
+        return connection().getTimeout().toNanos();
+    }
+
+    public static long decode(byte[] value) {
+        return value != null ? LongCodec.decode(value) : MISSING;
+    }
+
+    private StatefulRedisConnection<byte[], byte[]> connection() {
+        StatefulRedisConnection<byte[], byte[]> current = connection;
+        if (current != null) {
+            return current;
+        }
+        connectLock.lock();
+        try {
+            if (connection == null) {
+                AbstractRedisClient client = connectionFactory.getRequiredNativeClient();
+                if (!(client instanceof RedisClient redisClient)) {
+                    throw new IllegalStateException("TypedRedis supports standalone/sentinel Redis, not "
+                            + client.getClass().getSimpleName());
+                }
+                connection = redisClient.connect(ByteArrayCodec.INSTANCE);
+                log.info("Shared Redis connection opened");
+            }
+            return connection;
+        } finally {
+            connectLock.unlock();
+        }
+    }
+
+    /**
+     * Usually a no-op: stopping the connection factory shuts the client down, and its connections with it.
+     */
+    @Override
+    public void destroy() {
+        StatefulRedisConnection<byte[], byte[]> current = connection;
+        if (current != null && current.isOpen()) {
+            current.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.flashsale.common.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rate limit for one category of hot-path log lines: lets at most one event through per
+ * interval and counts the ones it held back. An interval of 0 lets everything through.
+ */
+public final class LogSampler {
+
+    private final long intervalNanos;
+    private final AtomicLong nextAllowedAt = new AtomicLong(Long.MIN_VALUE);
+    private final LongAdder skipped = new LongAdder();
+
+    public LogSampler(long intervalMillis) {
+        this.intervalNanos = intervalMillis * 1_000_000;
+    }
+
+    /**
+     * -1 if this event should not be logged; otherwise how many were skipped since the last
+     * one that was.
+     */
+    public long sample() {
+        if (intervalNanos <= 0) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long next = nextAllowedAt.get();
+        if ((next != Long.MIN_VALUE && now - next < 0) || !nextAllowedAt.compareAndSet(next, now + intervalNanos)) {
+            skipped.increment();
+            return -1;
+        }
+        return skipped.sumThenReset();
+    }
+}
@@ -0,0 +1,25 @@
+package com.flashsale.common.util;
+
+import java.math.BigDecimal;
+
+/**
+ * Amounts are kept in Redis as integer cents so Lua can compare and DECRBY them.
+ */
+public final class Money {
+
+    private static final BigDecimal HUNDRED = BigDecimal.valueOf(100);
+
+    private Money() {
+    }
+
+    /**
+     * Throws ArithmeticException if the amount has more than two decimal places.
+     */
+    public static long toCents(BigDecimal amount) {
+        return amount.multiply(HUNDRED).longValueExact();
+    }
+
+    public static BigDecimal fromCents(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
@@ -2,8 +2,10 @@ package com.flashsale.flashsale.entity;
 
 import jakarta.persistence.*;
 import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "flash_sale_product")
@@ -38,4 +40,9 @@ public class FlashSaleProduct {
 
     @Column(nullable = false, columnDefinition = "TINYINT(1)")
     private Boolean enabled;
+
+    // Bumped on catalog edits (here by JPA, by hand through ON UPDATE); stock decrements leave it alone
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
 }
@@ -0,0 +1,34 @@
+package com.flashsale.flashsale.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "flash_sale_product_archive")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class FlashSaleProductArchive {
+
+    @Id
+    @Column(name = "flash_sale_product_id")
+    private Long flashSaleProductId;
+
+    @Column(name = "flash_sale_id", nullable = false)
+    private Long flashSaleId;
+
+    @Column(name = "redis_stock")
+    private Integer redisStock;
+
+    @Column(name = "db_available", nullable = false)
+    private Integer dbAvailable;
+
+    @CreationTimestamp
+    @Column(name = "archived_at", nullable = false, updatable = false)
+    private LocalDateTime archivedAt;
+}
@@ -0,0 +1,7 @@
+package com.flashsale.flashsale.repository;
+
+import com.flashsale.flashsale.entity.FlashSaleProductArchive;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface FlashSaleProductArchiveRepository extends JpaRepository<FlashSaleProductArchive, Long> {
+}
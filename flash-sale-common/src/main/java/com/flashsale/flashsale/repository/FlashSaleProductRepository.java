@@ -6,14 +6,63 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 public interface FlashSaleProductRepository extends JpaRepository<FlashSaleProduct, Long> {
 
     List<FlashSaleProduct> findByFlashSaleIdAndEnabledTrue(Long flashSaleId);
 
+    List<FlashSaleProduct> findByFlashSaleIdInAndEnabledTrue(Collection<Long> flashSaleIds);
+
+    /**
+     * Assigns updated_at to itself: an explicit assignment suppresses its ON UPDATE, so selling
+     * stock doesn't look like a catalog edit to the cache refresh.
+     */
     @Modifying
-    @Query("UPDATE FlashSaleProduct fsp SET fsp.saleAvailable = fsp.saleAvailable - 1 " +
+    @Query("UPDATE FlashSaleProduct fsp SET fsp.saleAvailable = fsp.saleAvailable - 1, fsp.updatedAt = fsp.updatedAt " +
         "WHERE fsp.id = :flashSaleProductId AND fsp.saleAvailable > 0")
     int decrementSaleStock(@Param("flashSaleProductId") Long flashSaleProductId);
+
+    @Query("SELECT MAX(fsp.updatedAt) FROM FlashSaleProduct fsp")
+    LocalDateTime findLatestUpdate();
+
+    /**
+     * Sales among saleIds whose campaign, allocations or products were edited after since.
+     */
+    @Query("SELECT DISTINCT fsp.flashSaleId FROM FlashSaleProduct fsp " +
+        "JOIN FlashSale fs ON fs.id = fsp.flashSaleId " +
+        "LEFT JOIN Product p ON p.id = fsp.productId " +
+        "WHERE fsp.flashSaleId IN :saleIds " +
+        "AND (fs.updatedAt > :since OR fsp.updatedAt > :since OR p.updatedAt > :since)")
+    List<Long> findSaleIdsChangedSince(@Param("saleIds") Collection<Long> saleIds,
+                                       @Param("since") LocalDateTime since);
+
+    /**
+     * Everything the item cache needs for the given sales in one joined query.
+     */
+    @Query("SELECT fsp.id AS flashSaleProductId, fsp.productId AS productId, p.name AS productName, " +
+        "p.category AS category, p.originalPrice AS originalPrice, fsp.salePrice AS salePrice, fs.id AS flashSaleId, " +
+        "fs.name AS flashSaleName, fs.startTime AS startTime, fs.endTime AS endTime " +
+        "FROM FlashSaleProduct fsp " +
+        "JOIN FlashSale fs ON fs.id = fsp.flashSaleId " +
+        "LEFT JOIN Product p ON p.id = fsp.productId " +
+        "WHERE fsp.flashSaleId IN :saleIds AND fsp.enabled = true " +
+        "ORDER BY fs.id, fsp.id")
+    List<CatalogRow> findCatalogRows(@Param("saleIds") Collection<Long> saleIds);
+
+    interface CatalogRow {
+        Long getFlashSaleProductId();
+        Long getProductId();
+        String getProductName();
+        String getCategory();
+        BigDecimal getOriginalPrice();
+        BigDecimal getSalePrice();
+        Long getFlashSaleId();
+        String getFlashSaleName();
+        LocalDateTime getStartTime();
+        LocalDateTime getEndTime();
+    }
 }
@@ -13,5 +13,15 @@ public interface FlashSaleRepository extends JpaRepository<FlashSale, Long> {
     @Query("SELECT fs FROM FlashSale fs WHERE fs.status = 1 AND fs.startTime <= :now AND fs.endTime >= :now")
     List<FlashSale> findActiveAt(@Param("now") LocalDateTime now);
 
+    @Query("SELECT fs.id FROM FlashSale fs WHERE fs.status = 1 AND fs.startTime <= :now AND fs.endTime >= :now " +
+           "ORDER BY fs.id")
+    List<Long> findActiveIdsAt(@Param("now") LocalDateTime now);
+
+    @Query("SELECT fs FROM FlashSale fs WHERE fs.status = 1 AND fs.endTime >= :now ORDER BY fs.startTime")
+    List<FlashSale> findCurrentAndUpcoming(@Param("now") LocalDateTime now);
+
+    @Query("SELECT MAX(fs.updatedAt) FROM FlashSale fs")
+    LocalDateTime findLatestUpdate();
+
     List<FlashSale> findByStatus(Integer status);
 }
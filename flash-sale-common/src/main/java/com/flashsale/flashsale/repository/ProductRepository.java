@@ -2,6 +2,12 @@ package com.flashsale.flashsale.repository;
 
 import com.flashsale.flashsale.entity.Product;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
+
+    @Query("SELECT MAX(p.updatedAt) FROM Product p")
+    LocalDateTime findLatestUpdate();
 }
@@ -1,112 +1,653 @@
 package com.flashsale.flashsale.service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.flashsale.flashsale.entity.FlashSale;
-import com.flashsale.flashsale.entity.FlashSaleProduct;
-import com.flashsale.flashsale.entity.Product;
+import com.flashsale.common.datasource.ReadReplica;
+import com.flashsale.common.jfr.CatalogRefreshEvent;
+import com.flashsale.common.redis.KeyPrefix;
+import com.flashsale.common.redis.RedisFunctions;
+import com.flashsale.common.redis.RedisKeys;
+import com.flashsale.common.redis.TypedRedis;
+import com.flashsale.common.util.Money;
 import com.flashsale.flashsale.repository.FlashSaleProductRepository;
+import com.flashsale.flashsale.repository.FlashSaleProductRepository.CatalogRow;
 import com.flashsale.flashsale.repository.FlashSaleRepository;
 import com.flashsale.flashsale.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.function.Function;
-import java.util.stream.Collectors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class FlashSaleCacheService {
 
-    static final String CACHE_KEY = "fs:active:items";
-    private static final long CACHE_TTL_SECONDS = 60;
+    static final String INDEX_KEY = "fs:active:ids";
+    static final String VERSION_KEY = "fs:active:version";
+    static final String FRESH_KEY = "fs:active:items:fresh";
+    static final String LOCK_KEY = "fs:active:items:lock";
+    static final String ITEM_KEY_PREFIX = "fs:item:";
+    private static final KeyPrefix ITEM_KEY = KeyPrefix.of(ITEM_KEY_PREFIX, "");
+    private static final byte[] VERSION_KEY_BYTES = VERSION_KEY.getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FRESH_KEY_BYTES = FRESH_KEY.getBytes(StandardCharsets.UTF_8);
+
+    // Hash fields of fs:item:{fspId}, in decode order. Prices are cents, times are epoch millis (UTC).
+    private static final List<String> ITEM_FIELDS = List.of(
+            "flashSaleId", "productId", "productName", "category", "originalPriceCents", "salePriceCents",
+            "flashSaleName", "startMillis", "endMillis");
+    private static final byte[][] ITEM_FIELD_BYTES = ITEM_FIELDS.stream()
+            .map(field -> field.getBytes(StandardCharsets.UTF_8))
+            .toArray(byte[][]::new);
+
+    // Soft TTL: after this the catalog is stale and one caller rebuilds it.
+    // Hard TTL: the last good catalog survives this long (e.g. a worker outage) and keeps being served.
+    private static final long SOFT_TTL_SECONDS = 60;
+    private static final long HARD_TTL_SECONDS = 3600;
+    // Item hashes reclaim themselves this long after their sale ends
+    private static final long ITEM_GRACE_MILLIS = 3600_000;
+    private static final long LOCK_TTL_MILLIS = 10_000;
+    private static final long MISS_WAIT_MILLIS = 2_000;
+    private static final long MISS_POLL_MILLIS = 50;
+    // Optimistic catalog writes retried (in full) when another writer publishes in between
+    private static final int MAX_WRITE_ATTEMPTS = 3;
+
+    // Change detection looks back a little past the last watermark to catch rows whose
+    // transaction committed after we read MAX(updated_at); a periodic full resync bounds the rest.
+    private static final long CHANGE_OVERLAP_SECONDS = 5;
+    private static final long FULL_RESYNC_MILLIS = 5 * 60_000;
+
+    // Delete the lock only if we still own it (it may have expired and been taken by another node)
+    private static final DefaultRedisScript<Long> RELEASE_LOCK_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
 
     private final FlashSaleRepository flashSaleRepository;
     private final FlashSaleProductRepository flashSaleProductRepository;
     private final ProductRepository productRepository;
     private final RedisTemplate<String, Object> redisTemplate;
-    private final ObjectMapper objectMapper;
+    private final RedisFunctions redisFunctions;
+    private final TypedRedis typedRedis;
+
+    /**
+     * The rebuild currently running in this JVM, if any. Concurrent callers join it instead of
+     * starting their own DB queries. Completes with true once a catalog is in Redis.
+     */
+    private final AtomicReference<CompletableFuture<Boolean>> inFlightRefresh = new AtomicReference<>();
+
+    /**
+     * Runs stale-while-revalidate rebuilds, so the request that notices the soft TTL has passed
+     * doesn't pay for the MySQL load. One thread: inFlightRefresh admits one rebuild at a time.
+     */
+    private final ExecutorService revalidator = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().daemon().name("catalog-revalidate").factory());
+
+    /**
+     * Last catalog this JVM wrote — the baseline for incremental refreshes, used only while Redis
+     * still holds its version (see #write). Guarded by catalogLock.
+     */
+    private final Object catalogLock = new Object();
+    private CatalogState catalog;
 
     /**
      * Cached item metadata — everything EXCEPT availableStock (which is live in Redis).
+     * Stored as the hash fs:item:{fspId}; money in cents and times in epoch millis (UTC,
+     * the same convention as the fs:fsp:{id}:start/end keys).
      */
     public record CachedItem(
-            Long flashSaleProductId,
-            Long productId,
+            long flashSaleProductId,
+            long flashSaleId,
+            long productId,
             String productName,
-            BigDecimal originalPrice,
-            BigDecimal salePrice,
+            String category,
+            long originalPriceCents,
+            long salePriceCents,
             String flashSaleName,
-            LocalDateTime startTime,
-            LocalDateTime endTime
-    ) {}
+            long startMillis,
+            long endMillis
+    ) {
+        public BigDecimal originalPrice() {
+            return Money.fromCents(originalPriceCents);
+        }
+
+        public BigDecimal salePrice() {
+            return Money.fromCents(salePriceCents);
+        }
+
+        public LocalDateTime startTime() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(startMillis), ZoneOffset.UTC);
+        }
+
+        public LocalDateTime endTime() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(endMillis), ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * A cached item together with its live stock counter.
+     */
+    public record ListedItem(CachedItem item, int availableStock) {}
+
+    /**
+     * Snapshot of the active catalog, grouped by sale so changed sales can be swapped in
+     * without reloading the others.
+     *
+     * @param version      bumped only when the content changes; published with the catalog
+     * @param fullAtMillis when the last full (non-incremental) load happened
+     */
+    private record CatalogState(
+            Set<Long> activeSaleIds,
+            LocalDateTime watermark,
+            Map<Long, List<CachedItem>> itemsBySale,
+            long version,
+            long fullAtMillis
+    ) {
+        Map<Long, CachedItem> itemsById() {
+            Map<Long, CachedItem> items = new LinkedHashMap<>();
+            itemsBySale.values().forEach(list -> list.forEach(item -> items.put(item.flashSaleProductId(), item)));
+            return items;
+        }
+    }
+
+    /**
+     * All active items as of one catalog version; stock is as of the read.
+     */
+    public record Catalog(long version, List<ListedItem> items) {}
+
+    /** Raw item hash fields and stock counter, read together. */
+    private record ItemValues(List<byte[]> fields, byte[] stock) {}
 
     /**
      * Refresh active flash sale item cache.
-     * Queries DB once, serializes to JSON, stores in Redis with 60s TTL.
+     * Detects changes from the active sale set and updated_at watermarks; only changed sales
+     * are re-queried and only changed item hashes rewritten (otherwise the TTLs are just extended).
      */
     public void refreshCache() {
+        rebuild();
+    }
+
+    /**
+     * Version of the catalog currently in Redis, read without touching any item, so callers can
+     * keep derived structures (e.g. a search index) until the catalog actually changes.
+     * Never hits MySQL as a herd:
+     * <ul>
+     *   <li>Fresh catalog: returned as is.</li>
+     *   <li>Stale catalog (soft TTL passed): returned as is while a background thread on one node
+     *       rebuilds it.</li>
+     *   <li>No catalog at all: one caller per JVM rebuilds (guarded by a Redis lock across nodes),
+     *       everyone else waits for that result.</li>
+     * </ul>
+     * Only the Redis reads go through RedisGuard (TypedRedis#read); a rebuild runs outside it, so
+     * MySQL time and lock waits never hold bulkhead permits and MySQL errors never count as
+     * Redis failures. Returns -1 if nothing could be loaded.
+     */
+    public long currentVersion() {
+        List<byte[]> markers = typedRedis.read(commands -> TypedRedis.values(commands, VERSION_KEY_BYTES, FRESH_KEY_BYTES));
+        long version = TypedRedis.decode(markers.get(0));
+
+        if (version != TypedRedis.MISSING) {
+            if (markers.get(1) == null) {
+                revalidate();
+            }
+            return version;
+        }
+
+        log.warn("Flash sale cache miss — loading through single-flight refresh");
+        if (!loadOnMiss()) {
+            return -1;
+        }
+        long loaded = typedRedis.getLong(VERSION_KEY_BYTES);
+        return loaded != TypedRedis.MISSING ? loaded : -1;
+    }
+
+    /**
+     * Single item with its stock in one round trip (both commands go out back to back on the
+     * shared connection). Returns null if it is not cached.
+     */
+    public ListedItem getItem(long flashSaleProductId) {
+        ItemValues item = typedRedis.read(commands ->
+                TypedRedis.hashValues(commands, ITEM_KEY.key(flashSaleProductId), ITEM_FIELD_BYTES)
+                        .thenCombine(commands.get(RedisKeys.STOCK.key(flashSaleProductId)), ItemValues::new));
+        List<byte[]> values = item.fields();
+        byte[] stockValue = item.stock();
+
+        if (values == null || values.get(0) == null) {
+            return null;
+        }
+        List<Object> row = new ArrayList<>(ITEM_FIELDS.size() + 1);
+        row.add(flashSaleProductId);
+        for (byte[] value : values) {
+            row.add(value != null ? new String(value, StandardCharsets.UTF_8) : null);
+        }
+        return new ListedItem(decodeItem(row, 0), stockValue != null ? (int) TypedRedis.decode(stockValue) : 0);
+    }
+
+    /**
+     * Stale-while-revalidate: at most one refresher per JVM, and only if it also wins the
+     * cluster-wide lock. The rebuild runs on the revalidator thread; every caller, including
+     * the one that started it, returns immediately and keeps serving the stale catalog.
+     */
+    private void revalidate() {
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        if (!inFlightRefresh.compareAndSet(null, mine)) {
+            return;
+        }
+        try {
+            revalidator.execute(() -> revalidate(mine));
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            mine.complete(false);
+            inFlightRefresh.set(null);
+        }
+    }
+
+    private void revalidate(CompletableFuture<Boolean> mine) {
+        try {
+            String token = tryLock();
+            mine.complete(token != null && rebuildAndUnlock(token));
+        } catch (RuntimeException e) {
+            log.warn("Background revalidation of flash sale cache failed: {}", e.getMessage());
+            mine.complete(false);
+        } finally {
+            inFlightRefresh.set(null);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        revalidator.shutdownNow();
+    }
+
+    /**
+     * Hard miss: join the in-flight rebuild in this JVM or become the one running it.
+     * Returns true once a catalog is available in Redis.
+     */
+    private boolean loadOnMiss() {
+        CompletableFuture<Boolean> mine = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inFlightRefresh.compareAndExchange(null, mine);
+        if (existing != null) {
+            try {
+                return existing.get(MISS_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (Exception e) {
+                log.warn("Gave up waiting for in-flight cache refresh: {}", e.toString());
+                return false;
+            }
+        }
+
+        boolean loaded = false;
+        try {
+            String token = tryLock();
+            loaded = token != null ? rebuildAndUnlock(token) : awaitOtherNode();
+            return loaded;
+        } finally {
+            mine.complete(loaded);
+            inFlightRefresh.set(null);
+        }
+    }
+
+    /**
+     * Another node holds the rebuild lock — poll for the catalog it is about to publish
+     * rather than querying MySQL ourselves.
+     */
+    private boolean awaitOtherNode() {
+        long deadline = System.currentTimeMillis() + MISS_WAIT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(MISS_POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (typedRedis.exists(VERSION_KEY_BYTES)) {
+                return true;
+            }
+        }
+        log.warn("Flash sale cache still empty after {}ms wait on another node's refresh", MISS_WAIT_MILLIS);
+        return false;
+    }
+
+    private String tryLock() {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = redisTemplate.opsForValue()
+                .setIfAbsent(LOCK_KEY, token, LOCK_TTL_MILLIS, TimeUnit.MILLISECONDS);
+        return Boolean.TRUE.equals(acquired) ? token : null;
+    }
+
+    private boolean rebuildAndUnlock(String token) {
         try {
-            LocalDateTime now = LocalDateTime.now();
-            List<FlashSale> activeSales = flashSaleRepository.findActiveAt(now);
-
-            List<CachedItem> items = new ArrayList<>();
-
-            for (FlashSale sale : activeSales) {
-                List<FlashSaleProduct> fspList =
-                        flashSaleProductRepository.findByFlashSaleIdAndEnabledTrue(sale.getId());
-
-                List<Long> productIds = fspList.stream().map(FlashSaleProduct::getProductId).toList();
-                Map<Long, Product> productMap = productRepository.findAllById(productIds).stream()
-                        .collect(Collectors.toMap(Product::getId, Function.identity()));
-
-                for (FlashSaleProduct fsp : fspList) {
-                    Product product = productMap.get(fsp.getProductId());
-                    items.add(new CachedItem(
-                            fsp.getId(),
-                            fsp.getProductId(),
-                            product != null ? product.getName() : "Unknown",
-                            product != null ? product.getOriginalPrice() : BigDecimal.ZERO,
-                            fsp.getSalePrice(),
-                            sale.getName(),
-                            sale.getStartTime(),
-                            sale.getEndTime()
-                    ));
+            return rebuild();
+        } finally {
+            redisTemplate.execute(RELEASE_LOCK_SCRIPT, List.of(LOCK_KEY), token);
+        }
+    }
+
+    /**
+     * Bring the catalog up to date and publish it. Returns false if the refresh failed
+     * (whatever is in Redis is left untouched).
+     */
+    private boolean rebuild() {
+        synchronized (catalogLock) {
+            CatalogRefreshEvent trace = new CatalogRefreshEvent();
+            trace.begin();
+            try {
+                CatalogState previous = catalog;
+                // Catalog data tolerates replica lag; the watermark overlap covers late rows
+                CatalogState next = ReadReplica.read(() -> loadCatalog(previous));
+                trace.version = next.version();
+                trace.activeSales = next.activeSaleIds().size();
+
+                if (previous != null && next.version() == previous.version()) {
+                    touch(next);
+                    catalog = next;
+                    trace.succeeded = true;
+                    return true;
                 }
+
+                int written = write(previous, next);
+                catalog = next;
+                trace.changed = true;
+                trace.itemsWritten = written;
+                trace.succeeded = true;
+                log.debug("Flash sale cache refreshed: {} item hashes written, {} sales active (version {})",
+                        written, next.activeSaleIds().size(), next.version());
+                return true;
+            } catch (Exception e) {
+                log.error("Failed to refresh flash sale cache: {}", e.getMessage(), e);
+                return false;
+            } finally {
+                trace.commit();
+            }
+        }
+    }
+
+    /**
+     * Returns a state with the previous version when nothing changed, otherwise a new version
+     * in which only newly active or edited sales were re-queried.
+     */
+    private CatalogState loadCatalog(CatalogState previous) {
+        long nowMillis = System.currentTimeMillis();
+        Set<Long> activeIds = new TreeSet<>(flashSaleRepository.findActiveIdsAt(LocalDateTime.now()));
+        LocalDateTime watermark = latestCatalogUpdate();
+
+        if (previous == null || nowMillis - previous.fullAtMillis() >= FULL_RESYNC_MILLIS) {
+            Map<Long, List<CachedItem>> itemsBySale = loadSales(activeIds);
+            long version = previous != null && itemsBySale.equals(previous.itemsBySale())
+                    ? previous.version()
+                    : nextVersion(previous);
+            return new CatalogState(activeIds, watermark, itemsBySale, version, nowMillis);
+        }
+
+        Set<Long> changed = new TreeSet<>(activeIds);
+        changed.removeAll(previous.activeSaleIds());
+        boolean anyEnded = !activeIds.containsAll(previous.activeSaleIds());
+
+        if (watermark != null && !watermark.equals(previous.watermark())) {
+            Set<Long> stillActive = new HashSet<>(activeIds);
+            stillActive.removeAll(changed);
+            if (!stillActive.isEmpty()) {
+                changed.addAll(previous.watermark() == null
+                        ? stillActive
+                        : flashSaleProductRepository.findSaleIdsChangedSince(stillActive,
+                                previous.watermark().minusSeconds(CHANGE_OVERLAP_SECONDS)));
+            }
+        }
+
+        if (changed.isEmpty() && !anyEnded) {
+            return previous;
+        }
+
+        Map<Long, List<CachedItem>> itemsBySale = new TreeMap<>();
+        for (Long saleId : activeIds) {
+            List<CachedItem> unchanged = previous.itemsBySale().get(saleId);
+            if (!changed.contains(saleId) && unchanged != null) {
+                itemsBySale.put(saleId, unchanged);
             }
+        }
+        itemsBySale.putAll(loadSales(changed));
 
-            String json = objectMapper.writeValueAsString(items);
-            redisTemplate.opsForValue().set(CACHE_KEY, json, CACHE_TTL_SECONDS, TimeUnit.SECONDS);
+        return new CatalogState(activeIds, watermark, itemsBySale, nextVersion(previous), previous.fullAtMillis());
+    }
 
-            log.debug("Flash sale cache refreshed: {} items", items.size());
-        } catch (Exception e) {
-            log.error("Failed to refresh flash sale cache: {}", e.getMessage(), e);
+    private Map<Long, List<CachedItem>> loadSales(Collection<Long> saleIds) {
+        Map<Long, List<CachedItem>> itemsBySale = new TreeMap<>();
+        if (saleIds.isEmpty()) {
+            return itemsBySale;
         }
+        for (CatalogRow row : flashSaleProductRepository.findCatalogRows(saleIds)) {
+            itemsBySale.computeIfAbsent(row.getFlashSaleId(), id -> new ArrayList<>()).add(new CachedItem(
+                    row.getFlashSaleProductId(),
+                    row.getFlashSaleId(),
+                    row.getProductId(),
+                    row.getProductName() != null ? row.getProductName() : "Unknown",
+                    row.getCategory(),
+                    row.getOriginalPrice() != null ? Money.toCents(row.getOriginalPrice()) : 0,
+                    Money.toCents(row.getSalePrice()),
+                    row.getFlashSaleName(),
+                    row.getStartTime().toInstant(ZoneOffset.UTC).toEpochMilli(),
+                    row.getEndTime().toInstant(ZoneOffset.UTC).toEpochMilli()
+            ));
+        }
+        return itemsBySale;
+    }
+
+    private LocalDateTime latestCatalogUpdate() {
+        return Stream.of(
+                        flashSaleRepository.findLatestUpdate(),
+                        flashSaleProductRepository.findLatestUpdate(),
+                        productRepository.findLatestUpdate())
+                .filter(Objects::nonNull)
+                .max(Comparator.naturalOrder())
+                .orElse(null);
+    }
+
+    private static long nextVersion(CatalogState previous) {
+        long now = System.currentTimeMillis();
+        return previous != null ? Math.max(now, previous.version() + 1) : now;
     }
 
     /**
-     * Read cached items from Redis. Returns null on cache miss.
+     * Publish next in one MULTI/EXEC so readers never see a half-applied catalog.
+     * Incremental only while Redis still holds exactly the previous catalog this JVM wrote (same
+     * version, index present): then only new/changed item hashes are written and removed ones
+     * deleted. Other nodes and the worker publish too, so otherwise the index is rebuilt from
+     * scratch. VERSION_KEY is WATCHed from that check to EXEC; if another writer publishes in
+     * between, the write is redone in full.
+     * Returns the number of item hashes written.
      */
-    public List<CachedItem> getCachedItems() {
-        Object raw = redisTemplate.opsForValue().get(CACHE_KEY);
-        if (raw == null) {
-            return null;
+    private int write(CatalogState previous, CatalogState next) {
+        for (int attempt = 0; attempt < MAX_WRITE_ATTEMPTS; attempt++) {
+            Integer written = redisTemplate.execute(writeSession(attempt == 0 ? previous : null, next));
+            if (written != null) {
+                return written;
+            }
         }
-        try {
-            return objectMapper.readValue(raw.toString(),
-                    objectMapper.getTypeFactory().constructCollectionType(List.class, CachedItem.class));
-        } catch (JsonProcessingException e) {
-            log.error("Failed to deserialize flash sale cache: {}", e.getMessage());
+        log.debug("Catalog version {} not published: other writers kept publishing concurrently", next.version());
+        return 0;
+    }
+
+    /**
+     * One optimistic attempt at {@link #write}; null if the transaction was aborted by the WATCH.
+     */
+    private SessionCallback<Integer> writeSession(CatalogState previous, CatalogState next) {
+        return new SessionCallback<>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Integer execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                ops.watch(VERSION_KEY);
+                Map<Long, CachedItem> before = previous != null && stillPublished(ops, previous)
+                        ? previous.itemsById()
+                        : null;
+                Map<Long, CachedItem> after = next.itemsById();
+
+                List<CachedItem> upserts = new ArrayList<>();
+                for (CachedItem item : after.values()) {
+                    if (before == null || !item.equals(before.get(item.flashSaleProductId()))) {
+                        upserts.add(item);
+                    }
+                }
+                List<String> removed = new ArrayList<>();
+                if (before != null) {
+                    for (Long id : before.keySet()) {
+                        if (!after.containsKey(id)) {
+                            removed.add(String.valueOf(id));
+                        }
+                    }
+                }
+
+                ops.multi();
+                if (before == null) {
+                    ops.delete(INDEX_KEY);
+                }
+                for (CachedItem item : upserts) {
+                    String key = ITEM_KEY_PREFIX + item.flashSaleProductId();
+                    ops.opsForHash().putAll(key, encodeItem(item));
+                    ops.expireAt(key, Instant.ofEpochMilli(item.endMillis() + ITEM_GRACE_MILLIS));
+                }
+                if (!removed.isEmpty()) {
+                    ops.opsForSet().remove(INDEX_KEY, removed.toArray());
+                    ops.delete(removed.stream().map(id -> ITEM_KEY_PREFIX + id).toList());
+                }
+                if (!after.isEmpty()) {
+                    ops.opsForSet().add(INDEX_KEY, after.keySet().stream().map(String::valueOf).toArray());
+                    ops.expire(INDEX_KEY, HARD_TTL_SECONDS, TimeUnit.SECONDS);
+                }
+                ops.opsForValue().set(VERSION_KEY, String.valueOf(next.version()), HARD_TTL_SECONDS, TimeUnit.SECONDS);
+                ops.opsForValue().set(FRESH_KEY, String.valueOf(next.version()), SOFT_TTL_SECONDS, TimeUnit.SECONDS);
+                // Never empty when it went through: the two SETs above always run
+                List<Object> results = ops.exec();
+                return results == null || results.isEmpty() ? null : upserts.size();
+            }
+        };
+    }
+
+    /**
+     * Redis holds this catalog as its current version, with its index.
+     */
+    private static boolean stillPublished(RedisOperations<String, Object> ops, CatalogState state) {
+        Object version = ops.opsForValue().get(VERSION_KEY);
+        return version != null && version.toString().equals(String.valueOf(state.version()))
+                && (state.itemsBySale().isEmpty() || Boolean.TRUE.equals(ops.hasKey(INDEX_KEY)));
+    }
+
+    /**
+     * Nothing changed: extend the TTLs instead of rewriting anything. If Redis lost the catalog
+     * (evicted, flushed), fall back to a full write.
+     */
+    private void touch(CatalogState state) {
+        boolean versionKept = Boolean.TRUE.equals(redisTemplate.expire(VERSION_KEY, HARD_TTL_SECONDS, TimeUnit.SECONDS));
+        if (!versionKept || !indexStillPresent(state)) {
+            write(null, state);
+            return;
+        }
+        redisTemplate.opsForValue().set(FRESH_KEY, String.valueOf(state.version()),
+                SOFT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Extends the index TTL; false if the index is gone although the catalog has items.
+     * An empty catalog has no index key (Redis drops empty sets), which is fine.
+     */
+    private boolean indexStillPresent(CatalogState state) {
+        return state.itemsBySale().isEmpty()
+                || Boolean.TRUE.equals(redisTemplate.expire(INDEX_KEY, HARD_TTL_SECONDS, TimeUnit.SECONDS));
+    }
+
+    /**
+     * All active items with live stock in one read-only function call (fs_active_items_v1),
+     * tagged with the catalog version. Returns null if no catalog is cached.
+     */
+    public Catalog getCatalog() {
+        List<String> args = new ArrayList<>(ITEM_FIELDS.size() + 1);
+        args.add(ITEM_KEY_PREFIX);
+        args.addAll(ITEM_FIELDS);
+        List<Object> raw = redisFunctions.callReadOnly(RedisFunctions.ACTIVE_ITEMS,
+                List.of(INDEX_KEY, VERSION_KEY, FRESH_KEY), args);
+
+        if (raw == null || raw.isEmpty() || raw.get(0) == null) {
             return null;
         }
+
+        // After version and the fresh marker, each item is: id, ITEM_FIELDS values, stock
+        int stride = ITEM_FIELDS.size() + 2;
+        List<ListedItem> items = new ArrayList<>((raw.size() - 2) / stride);
+        for (int i = 2; i + stride <= raw.size(); i += stride) {
+            items.add(new ListedItem(decodeItem(raw, i), parseStock(raw.get(i + stride - 1))));
+        }
+        items.sort(Comparator.comparingLong((ListedItem l) -> l.item().flashSaleId())
+                .thenComparingLong(l -> l.item().flashSaleProductId()));
+        return new Catalog(Long.parseLong(raw.get(0).toString()), items);
+    }
+
+    /**
+     * The fs:item:{fspId} hash fields of an item.
+     */
+    public static Map<String, String> encodeItem(CachedItem item) {
+        Map<String, String> hash = new HashMap<>();
+        hash.put("flashSaleId", String.valueOf(item.flashSaleId()));
+        hash.put("productId", String.valueOf(item.productId()));
+        hash.put("productName", item.productName());
+        hash.put("category", item.category() != null ? item.category() : "");
+        hash.put("originalPriceCents", String.valueOf(item.originalPriceCents()));
+        hash.put("salePriceCents", String.valueOf(item.salePriceCents()));
+        hash.put("flashSaleName", item.flashSaleName());
+        hash.put("startMillis", String.valueOf(item.startMillis()));
+        hash.put("endMillis", String.valueOf(item.endMillis()));
+        return hash;
+    }
+
+    /**
+     * Decode the id at offset followed by the ITEM_FIELDS values, in order.
+     */
+    public static CachedItem decodeItem(List<?> values, int offset) {
+        return new CachedItem(
+                Long.parseLong(values.get(offset).toString()),
+                Long.parseLong(values.get(offset + 1).toString()),
+                Long.parseLong(values.get(offset + 2).toString()),
+                Objects.toString(values.get(offset + 3), "Unknown"),
+                values.get(offset + 4) == null || values.get(offset + 4).toString().isEmpty()
+                        ? null
+                        : values.get(offset + 4).toString(),
+                Long.parseLong(values.get(offset + 5).toString()),
+                Long.parseLong(values.get(offset + 6).toString()),
+                Objects.toString(values.get(offset + 7), ""),
+                Long.parseLong(values.get(offset + 8).toString()),
+                Long.parseLong(values.get(offset + 9).toString()));
+    }
+
+    private static int parseStock(Object raw) {
+        return raw != null ? Integer.parseInt(raw.toString()) : 0;
     }
 }
@@ -27,7 +27,8 @@ CREATE TABLE IF NOT EXISTS `products` (
     `created_at`     DATETIME(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
     `updated_at`     DATETIME(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     PRIMARY KEY (`id`),
-    INDEX `idx_category` (`category`)
+    INDEX `idx_category` (`category`),
+    INDEX `idx_products_updated_at` (`updated_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- =====================================================================
@@ -52,13 +53,18 @@ CREATE TABLE IF NOT EXISTS `flash_sale` (
     `end_time`     DATETIME(3)  NOT NULL,
     `status`       TINYINT      NOT NULL DEFAULT 1 COMMENT '0=INACTIVE, 1=ACTIVE',
     `created_at`   DATETIME(3)  NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    `updated_at`   DATETIME(3)  NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     PRIMARY KEY (`id`),
-    INDEX `idx_time_range` (`start_time`, `end_time`)
+    INDEX `idx_time_range` (`start_time`, `end_time`),
+    INDEX `idx_fs_updated_at` (`updated_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- =====================================================================
 -- 5. Flash Sale Product — junction: products allocated to a flash sale
 --    Stock is managed HERE (per-sale allocation), not in global inventory
+--    updated_at tracks catalog edits (price, enabled, limit), by JPA or by hand;
+--    the async sale_available decrement assigns it to itself, which suppresses
+--    ON UPDATE, so stock sold doesn't look like an edit
 -- =====================================================================
 CREATE TABLE IF NOT EXISTS `flash_sale_product` (
     `id`              BIGINT        NOT NULL AUTO_INCREMENT,
@@ -69,29 +75,42 @@ CREATE TABLE IF NOT EXISTS `flash_sale_product` (
     `sale_available`  INT           NOT NULL DEFAULT 0 COMMENT 'Remaining stock for this sale',
     `per_user_limit`  INT           NOT NULL DEFAULT 1,
     `enabled`         TINYINT(1)    NOT NULL DEFAULT 1,
+    `updated_at`      DATETIME(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
     PRIMARY KEY (`id`),
     UNIQUE INDEX `uk_sale_product` (`flash_sale_id`, `product_id`),
     INDEX `idx_flash_sale_id` (`flash_sale_id`),
-    INDEX `idx_product_id` (`product_id`)
+    INDEX `idx_product_id` (`product_id`),
+    INDEX `idx_fsp_updated_at` (`updated_at`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
 -- =====================================================================
 -- 6. Orders — linked to flash_sale_product for full traceability
+--    Partitioned by month of order_day, the purchase day (UTC) embedded in
+--    order_no (FS-yyyyMMdd-...). Every unique key must contain the partition
+--    column; order_day is a function of order_no, so (order_no, order_day)
+--    still makes order_no unique. The worker's PartitionMaintenanceJob splits
+--    monthly partitions off pmax ahead of time and archives old ones.
+--    An existing non-partitioned orders table is left as is (IF NOT EXISTS);
+--    convert it once, off-peak, by recreating it from this definition.
 -- =====================================================================
 CREATE TABLE IF NOT EXISTS `orders` (
     `id`                    BIGINT        NOT NULL AUTO_INCREMENT,
-    `order_no`              VARCHAR(64)   NOT NULL UNIQUE,
+    `order_no`              VARCHAR(64)   NOT NULL,
     `user_id`               BIGINT        NOT NULL,
     `flash_sale_product_id` BIGINT        NOT NULL,
     `sale_price`            DECIMAL(12,2) NOT NULL,
     `status`                TINYINT       NOT NULL DEFAULT 0 COMMENT '0=CREATED, 1=PAID, 2=CANCELLED',
     `created_at`            DATETIME(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
     `updated_at`            DATETIME(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3),
-    PRIMARY KEY (`id`),
-    UNIQUE INDEX `uk_order_no` (`order_no`),
+    `order_day`             DATE          AS (CAST(SUBSTRING(`order_no`, 4, 8) AS DATE)) STORED NOT NULL,
+    PRIMARY KEY (`id`, `order_day`),
+    UNIQUE INDEX `uk_order_no` (`order_no`, `order_day`),
     INDEX `idx_user_id` (`user_id`),
     INDEX `idx_fsp_id` (`flash_sale_product_id`)
-) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+PARTITION BY RANGE COLUMNS (`order_day`) (
+    PARTITION `pmax` VALUES LESS THAN (MAXVALUE)
+);
 
 -- =====================================================================
 -- 7. Wallets — user balance for payments
@@ -105,6 +124,7 @@ CREATE TABLE IF NOT EXISTS `wallets` (
 
 -- =====================================================================
 -- 8. Wallet Transactions — ledger for audit trail
+--    Partitioned by month of created_at, maintained like orders
 -- =====================================================================
 CREATE TABLE IF NOT EXISTS `wallet_transactions` (
     `id`           BIGINT        NOT NULL AUTO_INCREMENT,
@@ -113,11 +133,72 @@ CREATE TABLE IF NOT EXISTS `wallet_transactions` (
     `reference_id` VARCHAR(64)   NULL,
     `type`         VARCHAR(30)   NOT NULL,
     `created_at`   DATETIME(3)   NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
-    PRIMARY KEY (`id`),
+    PRIMARY KEY (`id`, `created_at`),
     INDEX `idx_wallet_tx_user` (`user_id`),
     INDEX `idx_wallet_tx_ref` (`reference_id`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci
+PARTITION BY RANGE COLUMNS (`created_at`) (
+    PARTITION `pmax` VALUES LESS THAN (MAXVALUE)
+);
+
+-- =====================================================================
+-- 9. Flash Sale Product Archive — final Redis counters per item, written by
+--    the worker's lifecycle scheduler before it deletes the sale's keys
+-- =====================================================================
+CREATE TABLE IF NOT EXISTS `flash_sale_product_archive` (
+    `flash_sale_product_id` BIGINT      NOT NULL,
+    `flash_sale_id`         BIGINT      NOT NULL,
+    `redis_stock`           INT         NULL COMMENT 'Last Redis stock counter; NULL if already gone',
+    `db_available`          INT         NOT NULL COMMENT 'sale_available at archive time',
+    `archived_at`           DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3),
+    PRIMARY KEY (`flash_sale_product_id`),
+    INDEX `idx_fspa_flash_sale_id` (`flash_sale_id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- =====================================================================
+-- Migrations — columns and indexes added to tables after they were first
+-- created. CREATE TABLE IF NOT EXISTS leaves an existing table as it was, and
+-- ddl-auto: validate refuses to start without them. MySQL has no ADD COLUMN
+-- IF NOT EXISTS, so each one checks information_schema and runs as a
+-- prepared statement; on an up-to-date schema they are all no-ops.
+-- =====================================================================
+
+-- Catalog change detection (updated_at watermarks)
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'flash_sale' AND COLUMN_NAME = 'updated_at') = 0,
+    'ALTER TABLE `flash_sale` ADD COLUMN `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) AFTER `created_at`', 'DO 0');
+PREPARE migrate FROM @ddl;
+EXECUTE migrate;
+DEALLOCATE PREPARE migrate;
+-- flash_sale_product.updated_at first shipped without ON UPDATE: add it there too
+SET @ddl = (SELECT CASE
+        WHEN COUNT(*) = 0 THEN 'ALTER TABLE `flash_sale_product` ADD COLUMN `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3) AFTER `enabled`'
+        WHEN MAX(EXTRA) NOT LIKE '%on update%' THEN 'ALTER TABLE `flash_sale_product` MODIFY COLUMN `updated_at` DATETIME(3) NOT NULL DEFAULT CURRENT_TIMESTAMP(3) ON UPDATE CURRENT_TIMESTAMP(3)'
+        ELSE 'DO 0' END
+    FROM information_schema.COLUMNS
+    WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'flash_sale_product' AND COLUMN_NAME = 'updated_at');
+PREPARE migrate FROM @ddl;
+EXECUTE migrate;
+DEALLOCATE PREPARE migrate;
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'products' AND INDEX_NAME = 'idx_products_updated_at') = 0,
+    'ALTER TABLE `products` ADD INDEX `idx_products_updated_at` (`updated_at`)', 'DO 0');
+PREPARE migrate FROM @ddl;
+EXECUTE migrate;
+DEALLOCATE PREPARE migrate;
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'flash_sale' AND INDEX_NAME = 'idx_fs_updated_at') = 0,
+    'ALTER TABLE `flash_sale` ADD INDEX `idx_fs_updated_at` (`updated_at`)', 'DO 0');
+PREPARE migrate FROM @ddl;
+EXECUTE migrate;
+DEALLOCATE PREPARE migrate;
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.STATISTICS
+        WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'flash_sale_product' AND INDEX_NAME = 'idx_fsp_updated_at') = 0,
+    'ALTER TABLE `flash_sale_product` ADD INDEX `idx_fsp_updated_at` (`updated_at`)', 'DO 0');
+PREPARE migrate FROM @ddl;
+EXECUTE migrate;
+DEALLOCATE PREPARE migrate;
+
 -- =====================================================================
 -- Seed data: 100 products, 5 flash sale campaigns, allocations
 -- Uses CURDATE() so data is always "today" on every restart
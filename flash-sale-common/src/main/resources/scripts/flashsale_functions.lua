@@ -0,0 +1,199 @@
+#!lua name=flashsale
+--[[
+  Redis Functions library of the flash sale (Redis 7+). The worker loads it at startup and keeps
+  it current (see RedisFunctions); the API only calls it, with FCALL / FCALL_RO.
+
+  LIBRARY_VERSION goes up with every change to this file. A worker with a newer copy replaces the
+  loaded library atomically (FUNCTION LOAD REPLACE), and running API nodes pick the new code up
+  on their next call. Function names carry the version of their KEYS/ARGV/reply contract: a
+  change that callers must know about gets a new name (fs_purchase_v2) next to the old one, which
+  stays until no deployed API calls it.
+]]
+
+local LIBRARY_VERSION = 2
+
+--[[
+  fs_purchase_v1 — atomic purchase (with balance)
+
+  keys[1] = fs:fsp:{fspId}:stock          -- Allocated stock counter (integer)
+  keys[2] = fs:user:{userId}:daily:{date} -- User daily purchase flag
+  keys[3] = fs:fsp:{fspId}:price          -- Sale price in cents (integer)
+  keys[4] = fs:user:{userId}:balance      -- User balance in cents (integer)
+  keys[5] = fs:idem:{userId}:{key}        -- Optional: outcome of this Idempotency-Key (hash)
+
+  args[1] = ttl_seconds (integer) -- Seconds until midnight (current day).
+           Key expires at end of day so user can purchase again next calendar day.
+  args[2] = orderNo to assign on success
+  args[3] = fspId (recorded with the outcome, so a key reused for another item is caught)
+  args[4] = idempotency_ttl_seconds (integer) -- How long the outcome is replayed
+
+  Returns {code, orderNo}, and for a replay {2, orderNo, persisted, priceCents}. Codes:
+    1  = Success — stock decremented, balance deducted, user flag set
+    2  = Replay — this Idempotency-Key already succeeded; orderNo is the original one.
+         persisted is '1' once fs_order_persisted_v1 marked the order saved, '0' while it is
+         pending ('' for outcomes recorded before version 2): the request that bought it may
+         have failed after the script ran (reply timeout), so the caller re-sends the order
+         to persistence unless it finds the row. priceCents is the price charged.
+   -1  = Item price not found in Redis
+   -2  = User balance not found in Redis
+   -3  = Insufficient balance
+   -4  = User already purchased a flash sale product today
+   -5  = Out of stock
+   -6  = Idempotency-Key already used for a different item
+
+  Outcomes -3..-5 and 1 are final for the key and replayed as-is; -1/-2 are transient
+  (cache not warm yet) and are not recorded, so a retry evaluates the purchase again.
+  The replay's extra elements only extend the v1 reply, so callers reading {code, orderNo}
+  are unaffected.
+]]
+local function purchase_v1(keys, args)
+    local stockKey   = keys[1]
+    local dailyKey   = keys[2]
+    local priceKey   = keys[3]
+    local balanceKey = keys[4]
+    local idemKey    = keys[5]
+
+    local orderNo = args[2]
+    local fspId   = args[3]
+
+    -- 0. Replay a recorded outcome for this Idempotency-Key
+    if idemKey then
+        local recorded = redis.call('HMGET', idemKey, 'fsp', 'code', 'orderNo', 'persisted', 'price')
+        if recorded[1] then
+            if recorded[1] ~= fspId then
+                return { -6, '' }
+            end
+            local code = tonumber(recorded[2])
+            if code == 1 then
+                return { 2, recorded[3], recorded[4] or '', recorded[5] or '' }
+            end
+            return { code, '' }
+        end
+    end
+
+    local function finish(code, price)
+        if idemKey then
+            if code == 1 then
+                redis.call('HSET', idemKey, 'fsp', fspId, 'code', code, 'orderNo', orderNo,
+                    'persisted', '0', 'price', price)
+            else
+                redis.call('HSET', idemKey, 'fsp', fspId, 'code', code, 'orderNo', '')
+            end
+            redis.call('EXPIRE', idemKey, tonumber(args[4]) or 600)
+        end
+        return { code, code == 1 and orderNo or '' }
+    end
+
+    -- 1. Get item price (cents)
+    local price = tonumber(redis.call('GET', priceKey))
+    if price == nil then
+        return { -1, '' }
+    end
+
+    -- 2. Get user balance (cents)
+    local balance = tonumber(redis.call('GET', balanceKey))
+    if balance == nil then
+        return { -2, '' }
+    end
+
+    -- 3. Check sufficient balance
+    if balance < price then
+        return finish(-3)
+    end
+
+    -- 4. Check user daily limit (1 flash sale purchase per user per day)
+    if redis.call('EXISTS', dailyKey) == 1 then
+        return finish(-4)
+    end
+
+    -- 5. Check stock availability
+    local stock = tonumber(redis.call('GET', stockKey))
+    if stock == nil or stock <= 0 then
+        return finish(-5)
+    end
+
+    -- 6. TTL: seconds until midnight (so key expires at end of current day)
+    local ttl = tonumber(args[1])
+    if ttl == nil or ttl < 1 then
+        ttl = 1
+    end
+
+    -- 7. All checks passed — perform atomic mutations
+    redis.call('DECRBY', balanceKey, price)
+    redis.call('DECR', stockKey)
+    redis.call('SET', dailyKey, '1', 'EX', ttl)
+
+    return finish(1, price)
+end
+
+--[[
+  fs_order_persisted_v1 — mark a purchase's order as saved to MySQL
+
+  keys[1] = fs:idem:{userId}:{key}  -- Outcome hash written by fs_purchase_v1
+  args[1] = orderNo
+
+  Sets persisted=1 if the hash still records this order; never creates the hash, so its TTL
+  stays the purchase's. Returns {1} if marked, {0} otherwise (an array, like fs_purchase_v1).
+]]
+local function order_persisted_v1(keys, args)
+    if redis.call('HGET', keys[1], 'orderNo') ~= args[1] then
+        return { 0 }
+    end
+    redis.call('HSET', keys[1], 'persisted', '1')
+    return { 1 }
+end
+
+--[[
+  fs_active_items_v1 — whole listing plus live stock in one round trip (read-only)
+
+  keys[1] = fs:active:ids          -- Index set of active flashSaleProductIds
+  keys[2] = fs:active:version      -- Catalog version (hard TTL); absent = cache miss
+  keys[3] = fs:active:items:fresh  -- Freshness marker (soft TTL); absent = stale
+
+  args[1]    = item hash key prefix ("fs:item:")
+  args[2..n] = hash fields to read from every item, in order
+
+  Returns: { version, fresh, id, field..., stock, id, field..., stock, ... }
+    version/fresh are nil when absent. Items whose hash has expired are skipped.
+    Item and stock keys are derived from the index, so this needs a non-cluster Redis.
+]]
+local function active_items_v1(keys, args)
+    local version = redis.call('GET', keys[2])
+    local fresh = redis.call('GET', keys[3])
+    local out = { version, fresh }
+
+    if not version then
+        return out
+    end
+
+    local fields = {}
+    for i = 2, #args do
+        fields[#fields + 1] = args[i]
+    end
+
+    for _, id in ipairs(redis.call('SMEMBERS', keys[1])) do
+        local values = redis.call('HMGET', args[1] .. id, unpack(fields))
+        if values[1] then
+            out[#out + 1] = id
+            for i = 1, #values do
+                out[#out + 1] = values[i]
+            end
+            out[#out + 1] = redis.call('GET', 'fs:fsp:' .. id .. ':stock')
+        end
+    end
+
+    return out
+end
+
+redis.register_function('fs_purchase_v1', purchase_v1)
+redis.register_function('fs_order_persisted_v1', order_persisted_v1)
+redis.register_function{
+    function_name = 'fs_active_items_v1',
+    callback = active_items_v1,
+    flags = { 'no-writes' }
+}
+redis.register_function{
+    function_name = 'fs_library_version',
+    callback = function() return LIBRARY_VERSION end,
+    flags = { 'no-writes' }
+}
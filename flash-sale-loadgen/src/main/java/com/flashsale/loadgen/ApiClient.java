@@ -0,0 +1,153 @@
+package com.flashsale.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.MissingNode;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+
+/**
+ * Blocking calls to the API's REST endpoints, meant to be made from virtual threads. Every
+ * call made with a non-null recorder is recorded under its endpoint name.
+ */
+final class ApiClient {
+
+    /** status 0 = no HTTP response (timeout or I/O error, see outcome) */
+    record Response(int status, String outcome, JsonNode body) {
+        boolean ok() {
+            return status == 200;
+        }
+
+        JsonNode data() {
+            return body.path("data");
+        }
+    }
+
+    static final String LOGIN = "login";
+    static final String LOGOUT = "logout";
+    static final String LIST_ITEMS = "items";
+    static final String GET_ITEM = "item";
+    static final String PURCHASE = "purchase";
+
+    private final String baseUrl;
+    private final Duration timeout;
+    private final HttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    ApiClient(String baseUrl, Duration timeout) {
+        this.baseUrl = baseUrl;
+        this.timeout = timeout;
+        this.http = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+    }
+
+    Response login(String identifier, String password, long dueAtNanos, LatencyRecorder recorder) {
+        return post(LOGIN, "/api/v1/auth/login", Map.of("identifier", identifier, "password", password),
+                null, null, dueAtNanos, recorder);
+    }
+
+    Response logout(String token, long dueAtNanos, LatencyRecorder recorder) {
+        return post(LOGOUT, "/api/v1/auth/logout", Map.of("token", token), null, null, dueAtNanos, recorder);
+    }
+
+    Response listItems(String query, long dueAtNanos, LatencyRecorder recorder) {
+        return get(LIST_ITEMS, "/api/v1/flash-sale/items" + query, dueAtNanos, recorder);
+    }
+
+    Response getItem(long flashSaleProductId, long dueAtNanos, LatencyRecorder recorder) {
+        return get(GET_ITEM, "/api/v1/flash-sale/items/" + flashSaleProductId, dueAtNanos, recorder);
+    }
+
+    Response purchase(String token, long flashSaleProductId, String idempotencyKey, long dueAtNanos,
+                      LatencyRecorder recorder) {
+        return post(PURCHASE, "/api/v1/flash-sale/purchase", Map.of("flashSaleProductId", flashSaleProductId),
+                token, idempotencyKey, dueAtNanos, recorder);
+    }
+
+    /**
+     * Ids of every active item, following the cursor through all pages.
+     */
+    List<Long> activeItemIds() {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            String query = cursor != null ? "?size=200&cursor=" + cursor : "?size=200";
+            Response page = listItems(query, System.nanoTime(), null);
+            if (!page.ok()) {
+                throw new IllegalStateException("GET /items failed: " + page.outcome());
+            }
+            page.data().path("items").forEach(item -> ids.add(item.path("flashSaleProductId").asLong()));
+            JsonNode next = page.data().path("nextCursor");
+            cursor = next.isTextual() ? next.asText() : null;
+        } while (cursor != null);
+        return ids;
+    }
+
+    private Response get(String endpoint, String path, long dueAtNanos, LatencyRecorder recorder) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout).GET().build();
+        return send(endpoint, request, dueAtNanos, recorder);
+    }
+
+    private Response post(String endpoint, String path, Map<String, ?> body, String token, String idempotencyKey,
+                          long dueAtNanos, LatencyRecorder recorder) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(timeout)
+                .header("Content-Type", "application/json");
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        if (idempotencyKey != null) {
+            request.header("Idempotency-Key", idempotencyKey);
+        }
+        try {
+            request.POST(HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return send(endpoint, request.build(), dueAtNanos, recorder);
+    }
+
+    private Response send(String endpoint, HttpRequest request, long dueAtNanos, LatencyRecorder recorder) {
+        long sentAt = System.nanoTime();
+        Response response;
+        try {
+            HttpResponse<byte[]> raw = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            response = new Response(raw.statusCode(), String.valueOf(raw.statusCode()), parse(raw.body()));
+        } catch (HttpTimeoutException e) {
+            response = new Response(0, "timeout", MissingNode.getInstance());
+        } catch (IOException e) {
+            response = new Response(0, "io-error", MissingNode.getInstance());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            response = new Response(0, "interrupted", MissingNode.getInstance());
+        }
+        if (recorder != null) {
+            recorder.record(endpoint, response.outcome(), dueAtNanos, sentAt, System.nanoTime());
+        }
+        return response;
+    }
+
+    private JsonNode parse(byte[] body) {
+        if (body.length == 0) {
+            return MissingNode.getInstance();
+        }
+        try {
+            return mapper.readTree(body);
+        } catch (IOException e) {
+            return MissingNode.getInstance();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.flashsale.loadgen;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-endpoint latency histograms (microseconds) and outcome counts.
+ * <p>
+ * Response time is measured from when the request was <em>due</em> under the open arrival
+ * model, not from when it was actually sent, so a stalled server or a backed-up client
+ * shows up as latency instead of silently lowering the request rate (coordinated
+ * omission). Service time, from send to response, is kept alongside for contrast.
+ */
+final class LatencyRecorder {
+
+    static final class Endpoint {
+        final Histogram responseTime = new ConcurrentHistogram(3);
+        final Histogram serviceTime = new ConcurrentHistogram(3);
+        final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+        Map<String, Long> outcomeCounts() {
+            Map<String, Long> counts = new TreeMap<>();
+            outcomes.forEach((outcome, count) -> counts.put(outcome, count.sum()));
+            return counts;
+        }
+    }
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+
+    void record(String endpoint, String outcome, long dueAtNanos, long sentAtNanos, long doneAtNanos) {
+        Endpoint stats = endpoints.computeIfAbsent(endpoint, name -> new Endpoint());
+        stats.responseTime.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(doneAtNanos - dueAtNanos, 0)));
+        stats.serviceTime.recordValue(TimeUnit.NANOSECONDS.toMicros(Math.max(doneAtNanos - sentAtNanos, 0)));
+        stats.outcomes.computeIfAbsent(outcome, name -> new LongAdder()).increment();
+    }
+
+    /**
+     * An arrival that was never started because --max-in-flight was reached.
+     */
+    void dropped() {
+        dropped.increment();
+    }
+
+    long droppedCount() {
+        return dropped.sum();
+    }
+
+    Map<String, Endpoint> endpoints() {
+        return new TreeMap<>(endpoints);
+    }
+}
@@ -0,0 +1,171 @@
+package com.flashsale.loadgen;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator for the flash-sale API.
+ * <p>
+ * Arrivals are scheduled at the scenario's rate regardless of how fast the API answers, each
+ * running on its own virtual thread, the way real users keep arriving while a server struggles.
+ * A closed loop of N workers (k6 VUs, JMeter threads) instead slows down with the server and
+ * under-reports exactly the latency a sale start produces.
+ */
+public final class LoadGenerator {
+
+    private static final int LOGIN_CONCURRENCY = 16;
+    private static final int LOGIN_ATTEMPTS = 5;
+
+    private final LoadOptions options;
+    private final ApiClient client;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+        this.client = new ApiClient(options.baseUrl(), options.requestTimeout());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options;
+        try {
+            if (args.length > 0 && (args[0].equals("--help") || args[0].equals("-h"))) {
+                System.out.print(LoadOptions.USAGE);
+                return;
+            }
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+    }
+
+    private void run() throws Exception {
+        List<Long> items = client.activeItemIds();
+        if (items.isEmpty()) {
+            throw new IllegalStateException("No active flash sale items at " + options.baseUrl());
+        }
+        List<String> tokens = loginUsers();
+        if (tokens.isEmpty()) {
+            throw new IllegalStateException("No user could log in; check --users and --password");
+        }
+        System.out.printf("%d items, %d users logged in; scenario %s at up to %.0f/s%n",
+                items.size(), tokens.size(), options.scenario().label(), options.peakRate());
+
+        LatencyRecorder recorder = new LatencyRecorder();
+        Session session = new Session(client, recorder, options, tokens, items);
+        SplittableRandom random = new SplittableRandom(options.seed());
+
+        if (!options.warmup().isZero()) {
+            System.out.printf("Warm-up %ds%n", options.warmup().toSeconds());
+            double warmupFactor = options.scenario().rateFactor(0);
+            drive(session.recordingTo(null), random, options.warmup(), progress -> warmupFactor, new LatencyRecorder());
+        }
+        System.out.printf("Measuring %ds%n", options.duration().toSeconds());
+        long started = System.nanoTime();
+        drive(session, random, options.duration(), options.scenario()::rateFactor, recorder);
+        awaitInFlight();
+        double measuredSeconds = (System.nanoTime() - started) / 1e9;
+
+        new Report().write(options, recorder, measuredSeconds);
+        System.exit(0);
+    }
+
+    private interface RateShape {
+        double factor(double progress);
+    }
+
+    /**
+     * Start arrivals at the shaped rate for the given time. Each arrival is due at its slot
+     * in the schedule; if this thread wakes up late, the arrival still carries its original
+     * due time, so the delay counts against the response time.
+     */
+    private void drive(Session session, SplittableRandom random, Duration length, RateShape shape,
+                       LatencyRecorder dropCounter) {
+        long start = System.nanoTime();
+        long lengthNanos = length.toNanos();
+        double offsetNanos = 0;
+        while (offsetNanos < lengthNanos) {
+            long dueAt = start + (long) offsetNanos;
+            long wait = dueAt - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            SplittableRandom arrivalRandom = random.split();
+            if (inFlight.incrementAndGet() > options.maxInFlight()) {
+                inFlight.decrementAndGet();
+                dropCounter.dropped();
+            } else {
+                Thread.ofVirtual().start(() -> {
+                    try {
+                        options.scenario().arrive(session, arrivalRandom, dueAt);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                });
+            }
+
+            double rate = Math.max(options.peakRate() * shape.factor(offsetNanos / lengthNanos), 0.1);
+            offsetNanos += 1e9 / rate;
+        }
+    }
+
+    private void awaitInFlight() {
+        long deadline = System.nanoTime() + options.requestTimeout().toNanos() * 5;
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(50));
+        }
+        if (inFlight.get() > 0) {
+            System.err.printf("%d arrivals still in flight after the grace period; not included%n", inFlight.get());
+        }
+    }
+
+    /**
+     * Log in test1..testN; BCrypt on the API is deliberately bounded, so go easy and retry 503s.
+     */
+    private List<String> loginUsers() throws InterruptedException {
+        List<String> tokens = Collections.synchronizedList(new ArrayList<>());
+        Semaphore permits = new Semaphore(LOGIN_CONCURRENCY);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int user = 1; user <= options.users(); user++) {
+                String identifier = "test" + user + "@testmail.com";
+                permits.acquire();
+                executor.submit(() -> {
+                    try {
+                        for (int attempt = 1; attempt <= LOGIN_ATTEMPTS; attempt++) {
+                            ApiClient.Response response = client.login(identifier, options.password(),
+                                    System.nanoTime(), null);
+                            if (response.ok()) {
+                                tokens.add(response.data().path("token").asText());
+                                return null;
+                            }
+                            if (response.status() != 503 && response.status() != 0) {
+                                System.err.printf("Login failed for %s: %s%n", identifier, response.outcome());
+                                return null;
+                            }
+                            Thread.sleep(200L * attempt);
+                        }
+                        return null;
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+        return new ArrayList<>(tokens);
+    }
+}
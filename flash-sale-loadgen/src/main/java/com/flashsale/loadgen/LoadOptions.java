@@ -0,0 +1,96 @@
+package com.flashsale.loadgen;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Command line of the load generator: --name value pairs, all optional.
+ */
+record LoadOptions(
+        String baseUrl,
+        Scenario scenario,
+        double peakRate,
+        Duration duration,
+        Duration warmup,
+        int users,
+        String password,
+        double buyRatio,
+        int retryBurst,
+        int maxInFlight,
+        Duration requestTimeout,
+        long seed,
+        Path outputDir,
+        Path baseline
+) {
+
+    static final String USAGE = """
+            Usage: java -jar loadgen.jar [--option value]...
+              --base-url      API to load (default http://localhost:8080)
+              --scenario      spike | hot-item | browse-buy | retry-storm | token-churn (default spike)
+              --rate          peak arrivals per second (default 500)
+              --duration      measured run, e.g. 60s or 5m (default 60s)
+              --warmup        unrecorded run at the scenario's opening rate before it (default 10s)
+              --users         seeded users test1..testN@testmail.com to log in (default 500)
+              --password      their password (default 1234aabb)
+              --buy-ratio     browse-buy: share of arrivals that purchase (default 0.1)
+              --retry-burst   retry-storm: duplicate submissions per purchase (default 3)
+              --max-in-flight arrivals beyond this many outstanding are counted as dropped (default 20000)
+              --timeout       per-request timeout (default 10s)
+              --seed          random seed (default 1)
+              --out           report directory (default target/loadgen/<scenario>-<time>)
+              --baseline      summary.json of an earlier run to compare against
+            """;
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            values.put(args[i].substring(2), args[++i]);
+        }
+
+        Scenario scenario = Scenario.fromName(values.getOrDefault("scenario", "spike"));
+        String out = values.get("out");
+        return new LoadOptions(
+                stripTrailingSlash(values.getOrDefault("base-url", "http://localhost:8080")),
+                scenario,
+                Double.parseDouble(values.getOrDefault("rate", "500")),
+                parseDuration(values.getOrDefault("duration", "60s")),
+                parseDuration(values.getOrDefault("warmup", "10s")),
+                Integer.parseInt(values.getOrDefault("users", "500")),
+                values.getOrDefault("password", "1234aabb"),
+                Double.parseDouble(values.getOrDefault("buy-ratio", "0.1")),
+                Integer.parseInt(values.getOrDefault("retry-burst", "3")),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "20000")),
+                parseDuration(values.getOrDefault("timeout", "10s")),
+                Long.parseLong(values.getOrDefault("seed", "1")),
+                out != null ? Path.of(out) : Path.of("target", "loadgen",
+                        scenario.label() + "-" + System.currentTimeMillis() / 1000),
+                values.containsKey("baseline") ? Path.of(values.get("baseline")) : null);
+    }
+
+    /**
+     * 500ms, 30s, 5m, or plain seconds.
+     */
+    static Duration parseDuration(String text) {
+        String value = text.trim().toLowerCase(Locale.ROOT);
+        if (value.endsWith("ms")) {
+            return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+        }
+        if (value.endsWith("s")) {
+            return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        if (value.endsWith("m")) {
+            return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+        }
+        return Duration.ofSeconds(Long.parseLong(value));
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
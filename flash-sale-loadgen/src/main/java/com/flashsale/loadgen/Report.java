@@ -0,0 +1,110 @@
+package com.flashsale.loadgen;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Results of a run, written to the output directory:
+ * <ul>
+ *   <li>report.txt — the table printed at the end of the run</li>
+ *   <li>summary.json — the same numbers, for --baseline of a later run</li>
+ *   <li>{endpoint}.hgrm — full response-time distribution (HdrHistogram percentile format,
+ *       microseconds), for plotting or diffing two runs</li>
+ * </ul>
+ */
+final class Report {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final ObjectMapper mapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    void write(LoadOptions options, LatencyRecorder recorder, double measuredSeconds) throws IOException {
+        Files.createDirectories(options.outputDir());
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("scenario", options.scenario().label());
+        summary.put("peakRate", options.peakRate());
+        summary.put("durationSeconds", measuredSeconds);
+        summary.put("dropped", recorder.droppedCount());
+        Map<String, Object> endpoints = new LinkedHashMap<>();
+        recorder.endpoints().forEach((name, stats) -> {
+            Map<String, Object> endpoint = new LinkedHashMap<>();
+            endpoint.put("count", stats.responseTime.getTotalCount());
+            endpoint.put("throughput", stats.responseTime.getTotalCount() / measuredSeconds);
+            endpoint.put("outcomes", stats.outcomeCounts());
+            endpoint.put("responseTimeMicros", percentiles(stats.responseTime));
+            endpoint.put("serviceTimeMicros", percentiles(stats.serviceTime));
+            endpoints.put(name, endpoint);
+        });
+        summary.put("endpoints", endpoints);
+        mapper.writeValue(options.outputDir().resolve("summary.json").toFile(), summary);
+
+        for (Map.Entry<String, LatencyRecorder.Endpoint> entry : recorder.endpoints().entrySet()) {
+            try (PrintStream out = new PrintStream(
+                    Files.newOutputStream(options.outputDir().resolve(entry.getKey() + ".hgrm")))) {
+                entry.getValue().responseTime.outputPercentileDistribution(out, 1.0);
+            }
+        }
+
+        JsonNode current = mapper.valueToTree(summary);
+        JsonNode baseline = options.baseline() != null ? mapper.readTree(options.baseline().toFile()) : null;
+        String table = table(current, baseline);
+        Files.writeString(options.outputDir().resolve("report.txt"), table);
+        System.out.print(table);
+        System.out.println("Reports written to " + options.outputDir().toAbsolutePath());
+    }
+
+    private static Map<String, Object> percentiles(Histogram histogram) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (double percentile : PERCENTILES) {
+            values.put("p" + format(percentile), histogram.getValueAtPercentile(percentile));
+        }
+        values.put("max", histogram.getMaxValue());
+        values.put("mean", histogram.getMean());
+        return values;
+    }
+
+    private static String table(JsonNode current, JsonNode baseline) {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.ROOT, "%nScenario %s, peak %.0f/s, %.0fs measured, %d arrivals dropped%n",
+                current.path("scenario").asText(), current.path("peakRate").asDouble(),
+                current.path("durationSeconds").asDouble(), current.path("dropped").asLong()));
+        out.append("Response time from scheduled start, ms (service time in brackets)")
+                .append(baseline != null ? "; change vs baseline after the value" : "")
+                .append(System.lineSeparator());
+
+        current.path("endpoints").fields().forEachRemaining(entry -> {
+            JsonNode stats = entry.getValue();
+            JsonNode previous = baseline != null ? baseline.path("endpoints").path(entry.getKey()) : null;
+            out.append(String.format(Locale.ROOT, "%n%-9s %8d req  %8.1f/s  %s%n", entry.getKey(),
+                    stats.path("count").asLong(), stats.path("throughput").asDouble(), stats.path("outcomes")));
+            for (String key : new String[]{"p50", "p90", "p99", "p99.9", "p99.99", "max"}) {
+                long response = stats.path("responseTimeMicros").path(key).asLong();
+                long service = stats.path("serviceTimeMicros").path(key).asLong();
+                out.append(String.format(Locale.ROOT, "  %-7s %10.2f (%8.2f)", key, response / 1000.0, service / 1000.0));
+                if (previous != null && previous.path("responseTimeMicros").has(key)) {
+                    long before = previous.path("responseTimeMicros").path(key).asLong();
+                    out.append(before > 0
+                            ? String.format(Locale.ROOT, "  %+6.1f%%", (response - before) * 100.0 / before)
+                            : "  n/a");
+                }
+                out.append(System.lineSeparator());
+            }
+        });
+        return out.toString();
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.rint(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
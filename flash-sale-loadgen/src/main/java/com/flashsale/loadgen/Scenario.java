@@ -0,0 +1,139 @@
+package com.flashsale.loadgen;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Shapes of sale traffic. Each one gives the arrival rate over the run, as a fraction of
+ * --rate, and what a single arrival does.
+ */
+enum Scenario {
+
+    /** Quiet pre-sale browsing, then everyone at once when the sale opens, then a decay. */
+    SPIKE("spike") {
+        @Override
+        double rateFactor(double progress) {
+            if (progress < 0.1) {
+                return 0.05;
+            }
+            if (progress < 0.2) {
+                return 1.0;
+            }
+            return Math.max(0.2, Math.exp(-(progress - 0.2) * 5));
+        }
+
+        @Override
+        void arrive(Session session, SplittableRandom random, long dueAt) {
+            if (random.nextDouble() < 0.3) {
+                session.client().listItems("", dueAt, session.recorder());
+            } else {
+                session.client().purchase(session.randomToken(random), session.randomItem(random), null, dueAt,
+                        session.recorder());
+            }
+        }
+    },
+
+    /** Every arrival buys the same item, so all scripts contend on one stock key. */
+    HOT_ITEM("hot-item") {
+        @Override
+        void arrive(Session session, SplittableRandom random, long dueAt) {
+            session.client().purchase(session.randomToken(random), session.hotItem(), null, dueAt, session.recorder());
+        }
+    },
+
+    /** Mostly catalog reads (list pages and item details), --buy-ratio of arrivals purchase. */
+    BROWSE_BUY("browse-buy") {
+        private static final String[] SORTS = {"default", "price_asc", "price_desc", "discount"};
+
+        @Override
+        void arrive(Session session, SplittableRandom random, long dueAt) {
+            if (random.nextDouble() < session.options().buyRatio()) {
+                session.client().purchase(session.randomToken(random), session.randomItem(random), null, dueAt,
+                        session.recorder());
+            } else if (random.nextBoolean()) {
+                session.client().listItems("?sort=" + SORTS[random.nextInt(SORTS.length)], dueAt, session.recorder());
+            } else {
+                session.client().getItem(session.randomItem(random), dueAt, session.recorder());
+            }
+        }
+    },
+
+    /**
+     * Impatient clients: each purchase is submitted --retry-burst times at once with the same
+     * Idempotency-Key, and every copy is resent immediately on a timeout, I/O error or 5xx.
+     */
+    RETRY_STORM("retry-storm") {
+        private static final int MAX_RETRIES = 3;
+
+        @Override
+        void arrive(Session session, SplittableRandom random, long dueAt) throws InterruptedException {
+            String token = session.randomToken(random);
+            long item = session.randomItem(random);
+            String idempotencyKey = UUID.randomUUID().toString();
+            List<Thread> copies = new ArrayList<>(session.options().retryBurst());
+            for (int i = 0; i < session.options().retryBurst(); i++) {
+                copies.add(Thread.ofVirtual().start(() -> {
+                    ApiClient.Response response = session.client().purchase(token, item, idempotencyKey, dueAt,
+                            session.recorder());
+                    for (int retry = 0; retry < MAX_RETRIES && (response.status() == 0 || response.status() >= 500); retry++) {
+                        response = session.client().purchase(token, item, idempotencyKey, System.nanoTime(),
+                                session.recorder());
+                    }
+                }));
+            }
+            for (Thread copy : copies) {
+                copy.join();
+            }
+        }
+    },
+
+    /** Short sessions: log in, buy once, log out — BCrypt, cold tokens and revocations. */
+    TOKEN_CHURN("token-churn") {
+        @Override
+        void arrive(Session session, SplittableRandom random, long dueAt) {
+            int user = 1 + random.nextInt(session.options().users());
+            ApiClient.Response login = session.client().login("test" + user + "@testmail.com",
+                    session.options().password(), dueAt, session.recorder());
+            if (!login.ok()) {
+                return;
+            }
+            String token = login.data().path("token").asText();
+            session.client().purchase(token, session.randomItem(random), null, System.nanoTime(), session.recorder());
+            session.client().logout(token, System.nanoTime(), session.recorder());
+        }
+    };
+
+    private final String label;
+
+    Scenario(String label) {
+        this.label = label;
+    }
+
+    String label() {
+        return label;
+    }
+
+    /**
+     * Arrival rate at progress (0..1 through the measured run) as a fraction of the peak.
+     */
+    double rateFactor(double progress) {
+        return 1.0;
+    }
+
+    /**
+     * One arrival, on its own virtual thread; dueAt is when it was scheduled to start.
+     */
+    abstract void arrive(Session session, SplittableRandom random, long dueAt) throws InterruptedException;
+
+    static Scenario fromName(String name) {
+        for (Scenario scenario : values()) {
+            if (scenario.label.equals(name.toLowerCase(Locale.ROOT))) {
+                return scenario;
+            }
+        }
+        throw new IllegalArgumentException("Unknown scenario: " + name);
+    }
+}
@@ -0,0 +1,31 @@
+package com.flashsale.loadgen;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * What the arrivals of a run share: the client, the tokens logged in during setup and the
+ * active items found then.
+ */
+record Session(ApiClient client, LatencyRecorder recorder, LoadOptions options, List<String> tokens,
+               List<Long> itemIds) {
+
+    String randomToken(SplittableRandom random) {
+        return tokens.get(random.nextInt(tokens.size()));
+    }
+
+    long randomItem(SplittableRandom random) {
+        return itemIds.get(random.nextInt(itemIds.size()));
+    }
+
+    long hotItem() {
+        return itemIds.get(0);
+    }
+
+    /**
+     * The same session, recording into another recorder (null = not recorded, for warm-up).
+     */
+    Session recordingTo(LatencyRecorder other) {
+        return new Session(client, other, options, tokens, itemIds);
+    }
+}
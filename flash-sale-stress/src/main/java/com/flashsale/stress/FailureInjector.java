@@ -0,0 +1,86 @@
+package com.flashsale.stress;
+
+import com.flashsale.order.listener.PurchaseEventListener;
+import com.flashsale.order.service.OrderPersistenceService;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.dao.TransientDataAccessResourceException;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Makes OrderPersistenceService#persistOrder fail now and then, outside its transaction:
+ * <ul>
+ *   <li>before it starts — nothing was written, the listener's retry must do the work;</li>
+ *   <li>after it committed — the order is in, the retry must recognise it and do nothing.</li>
+ * </ul>
+ * An order is failed at most MAX_EVENT_RETRIES - 1 times, so a correct listener always
+ * persists it; anything it gives up on is a bug, not bad luck.
+ */
+final class FailureInjector implements BeanPostProcessor {
+
+    private static final int MAX_FAILURES_PER_ORDER = PurchaseEventListener.MAX_EVENT_RETRIES - 1;
+
+    private final double failBeforeCommit;
+    private final double failAfterCommit;
+    // Shared by all nodes: an order's failures count wherever its retries run
+    private final ConcurrentHashMap<String, AtomicInteger> failuresByOrder;
+    private final LongAdder failedBefore;
+    private final LongAdder failedAfter;
+
+    FailureInjector(double failBeforeCommit, double failAfterCommit,
+                    ConcurrentHashMap<String, AtomicInteger> failuresByOrder,
+                    LongAdder failedBefore, LongAdder failedAfter) {
+        this.failBeforeCommit = failBeforeCommit;
+        this.failAfterCommit = failAfterCommit;
+        this.failuresByOrder = failuresByOrder;
+        this.failedBefore = failedBefore;
+        this.failedAfter = failedAfter;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof OrderPersistenceService)) {
+            return bean;
+        }
+        MethodInterceptor interceptor = invocation -> {
+            if (!invocation.getMethod().getName().equals("persistOrder")) {
+                return invocation.proceed();
+            }
+            String orderNo = (String) invocation.getArguments()[3];
+            if (shouldFail(orderNo, failBeforeCommit)) {
+                failedBefore.increment();
+                throw new TransientDataAccessResourceException("Injected failure before commit of " + orderNo);
+            }
+            Object result = invocation.proceed();
+            if (shouldFail(orderNo, failAfterCommit)) {
+                failedAfter.increment();
+                throw new TransientDataAccessResourceException("Injected failure after commit of " + orderNo);
+            }
+            return result;
+        };
+
+        // Ahead of the transaction interceptor, so "after" really is after the commit
+        if (bean instanceof Advised advised) {
+            advised.addAdvice(0, interceptor);
+            return bean;
+        }
+        ProxyFactory proxy = new ProxyFactory(bean);
+        proxy.setProxyTargetClass(true);
+        proxy.addAdvice(interceptor);
+        return proxy.getProxy();
+    }
+
+    private boolean shouldFail(String orderNo, double chance) {
+        if (chance <= 0 || ThreadLocalRandom.current().nextDouble() >= chance) {
+            return false;
+        }
+        AtomicInteger failures = failuresByOrder.computeIfAbsent(orderNo, key -> new AtomicInteger());
+        return failures.incrementAndGet() <= MAX_FAILURES_PER_ORDER;
+    }
+}
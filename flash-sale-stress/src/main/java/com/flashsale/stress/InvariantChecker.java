@@ -0,0 +1,176 @@
+package com.flashsale.stress;
+
+import com.flashsale.common.redis.RedisKeys;
+import com.flashsale.common.util.Money;
+import com.flashsale.flashsale.service.PurchaseKeys;
+import com.flashsale.stress.StressHarness.Node;
+import com.flashsale.stress.StressHarness.Outcomes;
+import com.flashsale.stress.StressHarness.Seed;
+import com.flashsale.stress.redis.RespServer;
+import io.micrometer.core.instrument.Counter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The invariants a run must leave intact, checked against H2 and the Redis stand-in once
+ * persistence has drained. Prints one OK/FAIL line per check with up to a few offending rows.
+ */
+final class InvariantChecker {
+
+    private static final int MAX_SAMPLES = 5;
+
+    private final JdbcTemplate jdbc;
+    private final RespServer redis;
+    private final List<Node> nodes;
+    private boolean passed = true;
+
+    InvariantChecker(JdbcTemplate jdbc, RespServer redis, List<Node> nodes) {
+        this.jdbc = jdbc;
+        this.redis = redis;
+        this.nodes = nodes;
+    }
+
+    boolean check(Seed seed, Outcomes outcomes) {
+        checkNoOversell(seed);
+        checkOnePerUserPerDay();
+        checkLedger(seed);
+        checkNoLostOrders(outcomes);
+        checkIdempotency(outcomes);
+        checkNoUnexpectedErrors(outcomes);
+        return passed;
+    }
+
+    /**
+     * Redis stock never below zero, and every unit it handed out is exactly one order row,
+     * one unit of sale_available and one unit of inventory.
+     */
+    private void checkNoOversell(Seed seed) {
+        Map<Long, Long> ordersByItem = new HashMap<>();
+        jdbc.query("SELECT flash_sale_product_id, COUNT(*) FROM orders GROUP BY flash_sale_product_id",
+                rs -> {
+                    ordersByItem.put(rs.getLong(1), rs.getLong(2));
+                });
+        List<String> violations = new ArrayList<>();
+        long sold = 0;
+        for (long itemId : seed.itemIds()) {
+            int stock = seed.stockByItem().get(itemId);
+            long left = Long.parseLong((String) redis.execute("GET", PurchaseKeys.stock(itemId)));
+            long orders = ordersByItem.getOrDefault(itemId, 0L);
+            Map<String, Object> row = jdbc.queryForMap("""
+                    SELECT p.sale_available, i.total_stock, i.available_stock
+                    FROM flash_sale_product p JOIN inventory i ON i.product_id = p.product_id
+                    WHERE p.id = ?""", itemId);
+            long saleAvailable = ((Number) row.get("SALE_AVAILABLE")).longValue();
+            long inventoryTaken = ((Number) row.get("TOTAL_STOCK")).longValue()
+                    - ((Number) row.get("AVAILABLE_STOCK")).longValue();
+            if (left < 0 || stock - left != orders || saleAvailable != stock - orders || inventoryTaken != orders) {
+                violations.add("item " + itemId + ": stock " + stock + ", redis left " + left + ", orders " + orders
+                        + ", sale_available " + saleAvailable + ", inventory taken " + inventoryTaken);
+            }
+            sold += orders;
+        }
+        report("sold <= stock, Redis/orders/sale_available/inventory agree (" + sold + " sold)", violations);
+    }
+
+    private void checkOnePerUserPerDay() {
+        List<String> violations = jdbc.query(
+                "SELECT user_id, COUNT(*) FROM orders GROUP BY user_id HAVING COUNT(*) > 1",
+                (rs, i) -> "user " + rs.getLong(1) + " has " + rs.getLong(2) + " orders");
+        report("at most one purchase per user per day", violations);
+    }
+
+    /**
+     * balance - initial == sum of ledger entries == -sum of order prices, per wallet; the Redis
+     * balance, where the purchase path loaded it, says the same; no payment booked twice.
+     */
+    private void checkLedger(Seed seed) {
+        Map<Long, BigDecimal> balances = new HashMap<>();
+        jdbc.query("SELECT user_id, balance FROM wallets", rs -> {
+            balances.put(rs.getLong(1), rs.getBigDecimal(2));
+        });
+        Map<Long, BigDecimal> ledger = new HashMap<>();
+        jdbc.query("SELECT user_id, SUM(amount) FROM wallet_transactions GROUP BY user_id", rs -> {
+            ledger.put(rs.getLong(1), rs.getBigDecimal(2));
+        });
+        Map<Long, BigDecimal> spent = new HashMap<>();
+        jdbc.query("SELECT user_id, SUM(sale_price) FROM orders GROUP BY user_id", rs -> {
+            spent.put(rs.getLong(1), rs.getBigDecimal(2));
+        });
+
+        List<String> violations = new ArrayList<>();
+        for (Map.Entry<Long, Long> entry : seed.initialBalanceCents().entrySet()) {
+            long userId = entry.getKey();
+            long initial = entry.getValue();
+            long delta = Money.toCents(balances.get(userId)) - initial;
+            long booked = Money.toCents(ledger.getOrDefault(userId, BigDecimal.ZERO));
+            long paid = Money.toCents(spent.getOrDefault(userId, BigDecimal.ZERO));
+            Object cached = redis.execute("GET", RedisKeys.BALANCE.name(userId));
+            boolean redisAgrees = cached == null || Long.parseLong((String) cached) == initial - paid;
+            if (delta != booked || delta != -paid || !redisAgrees) {
+                violations.add("user " + userId + ": initial " + initial + ", delta " + delta + ", ledger " + booked
+                        + ", orders " + paid + ", redis " + cached);
+            }
+        }
+        violations.addAll(jdbc.query("""
+                SELECT reference_id, COUNT(*) FROM wallet_transactions
+                WHERE reference_id IS NOT NULL GROUP BY reference_id HAVING COUNT(*) > 1""",
+                (rs, i) -> "reference " + rs.getString(1) + " booked " + rs.getLong(2) + " times"));
+        report("ledger sum == balance delta == -order total, per wallet (cents)", violations);
+    }
+
+    /**
+     * Every order number handed to a caller is in the database and vice versa, and no event
+     * ran out of retries.
+     */
+    private void checkNoLostOrders(Outcomes outcomes) {
+        Set<String> persisted = new HashSet<>(jdbc.queryForList("SELECT order_no FROM orders", String.class));
+        List<String> violations = new ArrayList<>();
+        for (String orderNo : outcomes.orderUsers.keySet()) {
+            if (!persisted.contains(orderNo)) {
+                violations.add("returned but not persisted: " + orderNo);
+            }
+        }
+        for (String orderNo : persisted) {
+            if (!outcomes.orderUsers.containsKey(orderNo)) {
+                violations.add("persisted but never returned: " + orderNo);
+            }
+        }
+        double failed = 0;
+        for (Node node : nodes) {
+            Counter counter = node.meterRegistry().find("order.persist").tag("result", "failed").counter();
+            failed += counter != null ? counter.count() : 0;
+        }
+        if (failed > 0) {
+            violations.add(String.format("%.0f purchase event(s) exhausted their retries", failed));
+        }
+        report("no lost orders (" + persisted.size() + " persisted)", violations);
+    }
+
+    private void checkIdempotency(Outcomes outcomes) {
+        long mismatches = outcomes.idempotencyMismatches.sum();
+        report("keyed retries got the first order number (" + outcomes.orderByIdempotencyKey.size() + " keys)",
+                mismatches == 0 ? List.of() : List.of(mismatches + " call(s) got a different order number"));
+    }
+
+    private void checkNoUnexpectedErrors(Outcomes outcomes) {
+        report("no unexpected errors", outcomes.errors.sum() == 0 ? List.of()
+                : List.of(outcomes.errors.sum() + " call(s) failed: " + outcomes.errorSamples));
+    }
+
+    private void report(String invariant, List<String> violations) {
+        if (violations.isEmpty()) {
+            System.out.println("OK   " + invariant);
+            return;
+        }
+        passed = false;
+        System.out.println("FAIL " + invariant + ": " + violations.size() + " violation(s)");
+        violations.stream().limit(MAX_SAMPLES).forEach(violation -> System.out.println("       " + violation));
+    }
+}
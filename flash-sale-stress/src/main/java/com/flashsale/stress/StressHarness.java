@@ -0,0 +1,293 @@
+package com.flashsale.stress;
+
+import com.flashsale.FlashSaleApiApplication;
+import com.flashsale.common.exception.BusinessException;
+import com.flashsale.common.util.Money;
+import com.flashsale.flashsale.entity.FlashSale;
+import com.flashsale.flashsale.entity.FlashSaleProduct;
+import com.flashsale.flashsale.entity.Inventory;
+import com.flashsale.flashsale.entity.Product;
+import com.flashsale.flashsale.exception.PurchaseRejectedException;
+import com.flashsale.flashsale.repository.FlashSaleProductRepository;
+import com.flashsale.flashsale.repository.FlashSaleRepository;
+import com.flashsale.flashsale.repository.InventoryRepository;
+import com.flashsale.flashsale.repository.ProductRepository;
+import com.flashsale.flashsale.service.FlashSaleService;
+import com.flashsale.flashsale.service.PurchaseKeys;
+import com.flashsale.order.service.PersistenceLagTracker;
+import com.flashsale.stress.redis.RespServer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Oversell and double-spend harness. Starts one or more complete API application contexts
+ * against an in-process Redis stand-in (which runs the Functions library atomically, see
+ * {@link RespServer}) and a shared in-memory H2 database, fires a large number of concurrent
+ * {@code attemptPurchase} calls at them — with duplicate keyed submissions across nodes and
+ * injected persistence failures ({@link FailureInjector}) — waits for async persistence to
+ * drain and then checks the invariants ({@link InvariantChecker}). Exits with 1 if any fails.
+ */
+public final class StressHarness {
+
+    private static final int MAX_ERRORS_SHOWN = 5;
+
+    record Node(ConfigurableApplicationContext context, FlashSaleService flashSaleService,
+                PersistenceLagTracker lagTracker, MeterRegistry meterRegistry) {}
+
+    /** Seeded state the checks compare against. */
+    record Seed(List<Long> itemIds, Map<Long, Integer> stockByItem, Map<Long, Long> priceCentsByItem,
+                Map<Long, Long> initialBalanceCents) {}
+
+    /** What the calls returned. */
+    static final class Outcomes {
+        final ConcurrentHashMap<String, Long> orderUsers = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<String, String> orderByIdempotencyKey = new ConcurrentHashMap<>();
+        final LongAdder idempotencyMismatches = new LongAdder();
+        final ConcurrentHashMap<String, LongAdder> rejections = new ConcurrentHashMap<>();
+        final LongAdder successes = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final List<String> errorSamples = new ArrayList<>();
+    }
+
+    private final StressOptions options;
+    private final List<Node> nodes = new ArrayList<>();
+    private final ConcurrentHashMap<String, AtomicInteger> failuresByOrder = new ConcurrentHashMap<>();
+    private final LongAdder failedBeforeCommit = new LongAdder();
+    private final LongAdder failedAfterCommit = new LongAdder();
+
+    private StressHarness(StressOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        StressOptions options;
+        try {
+            if (args.length > 0 && (args[0].equals("--help") || args[0].equals("-h"))) {
+                System.out.print(StressOptions.USAGE);
+                return;
+            }
+            options = StressOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(StressOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        System.exit(new StressHarness(options).run() ? 0 : 1);
+    }
+
+    private boolean run() throws Exception {
+        RespServer redis = RespServer.start();
+        try {
+            for (int i = 0; i < options.nodes(); i++) {
+                nodes.add(startNode(i, redis.port()));
+            }
+            Seed seed = seed(nodes.get(0).context(), redis);
+            System.out.printf("%d node(s), %d users, %d items x %d stock; %d attempts at concurrency %d%n",
+                    options.nodes(), options.users(), options.items(), options.stockPerItem(),
+                    options.attempts(), options.concurrency());
+
+            Outcomes outcomes = new Outcomes();
+            long started = System.nanoTime();
+            drive(seed, outcomes);
+            double seconds = (System.nanoTime() - started) / 1e9;
+            report(outcomes, seconds);
+
+            long drainStarted = System.nanoTime();
+            boolean drained = awaitPersistence();
+            System.out.printf("Persistence drained in %.1fs; injected failures: %d before commit, %d after%n",
+                    (System.nanoTime() - drainStarted) / 1e9, failedBeforeCommit.sum(), failedAfterCommit.sum());
+
+            InvariantChecker checker = new InvariantChecker(
+                    nodes.get(0).context().getBean(JdbcTemplate.class), redis, nodes);
+            boolean passed = drained & checker.check(seed, outcomes);
+            System.out.println(passed ? "ALL INVARIANTS HOLD" : "INVARIANT VIOLATIONS FOUND");
+            return passed;
+        } finally {
+            // Before the stand-in goes away, or Lettuce starts reconnecting
+            for (Node node : nodes) {
+                node.context().close();
+            }
+            redis.close();
+        }
+    }
+
+    private Node startNode(int index, int redisPort) {
+        List<String> args = List.of(
+                "--spring.application.name=stress-node-" + index,
+                "--server.port=0",
+                "--management.server.port=-1",
+                "--spring.main.banner-mode=off",
+                "--spring.jmx.enabled=false",
+                "--spring.datasource.url=jdbc:h2:mem:stress;MODE=MySQL;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.sql.init.mode=never",
+                // The first node creates the schema from the entities; the others share it
+                "--spring.jpa.hibernate.ddl-auto=" + (index == 0 ? "create" : "none"),
+                "--spring.data.redis.host=127.0.0.1",
+                "--spring.data.redis.port=" + redisPort,
+                "--app.jfr.enabled=false",
+                "--logging.level.root=WARN",
+                "--logging.level.com.flashsale=WARN",
+                "--logging.level.org.springframework.boot.autoconfigure.security=ERROR",
+                // Injected failures are logged per retry; the checks count them instead
+                "--logging.level.com.flashsale.order.listener=OFF");
+
+        FailureInjector injector = new FailureInjector(options.failBeforeCommit(), options.failAfterCommit(),
+                failuresByOrder, failedBeforeCommit, failedAfterCommit);
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(FlashSaleApiApplication.class)
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(injector))
+                .run(args.toArray(String[]::new));
+        return new Node(context, context.getBean(FlashSaleService.class),
+                context.getBean(PersistenceLagTracker.class), context.getBean(MeterRegistry.class));
+    }
+
+    /**
+     * One running sale: items priced 10.00, 15.00, ...; wallets between 0 and 200.00 so some
+     * users cannot afford some items. Redis gets what the worker's warm-up would write.
+     */
+    private Seed seed(ConfigurableApplicationContext context, RespServer redis) {
+        SplittableRandom random = new SplittableRandom(options.seed());
+        LocalDateTime now = LocalDateTime.now();
+        FlashSale sale = context.getBean(FlashSaleRepository.class).save(FlashSale.builder()
+                .name("Stress sale").startTime(now.minusHours(1)).endTime(now.plusHours(1))
+                .status(1).createdAt(now).build());
+
+        List<Long> itemIds = new ArrayList<>();
+        Map<Long, Integer> stockByItem = new HashMap<>();
+        Map<Long, Long> priceCentsByItem = new HashMap<>();
+        long startMillis = System.currentTimeMillis() - 3_600_000;
+        long endMillis = System.currentTimeMillis() + 3_600_000;
+        for (int i = 0; i < options.items(); i++) {
+            BigDecimal price = BigDecimal.valueOf(1000 + 500L * i, 2);
+            Product product = context.getBean(ProductRepository.class).save(Product.builder()
+                    .name("Stress item " + i).originalPrice(price.multiply(BigDecimal.TWO)).category("stress").build());
+            context.getBean(InventoryRepository.class).save(Inventory.builder()
+                    .productId(product.getId())
+                    .totalStock(options.stockPerItem() * 2).availableStock(options.stockPerItem() * 2).build());
+            FlashSaleProduct item = context.getBean(FlashSaleProductRepository.class).save(FlashSaleProduct.builder()
+                    .flashSaleId(sale.getId()).productId(product.getId()).salePrice(price)
+                    .saleStock(options.stockPerItem()).saleAvailable(options.stockPerItem())
+                    .perUserLimit(1).enabled(true).build());
+
+            long id = item.getId();
+            itemIds.add(id);
+            stockByItem.put(id, options.stockPerItem());
+            priceCentsByItem.put(id, Money.toCents(price));
+            redis.execute("SET", PurchaseKeys.stock(id), String.valueOf(options.stockPerItem()));
+            redis.execute("SET", PurchaseKeys.price(id), String.valueOf(Money.toCents(price)));
+            redis.execute("SET", PurchaseKeys.start(id), String.valueOf(startMillis));
+            redis.execute("SET", PurchaseKeys.end(id), String.valueOf(endMillis));
+        }
+
+        Map<Long, Long> balances = new HashMap<>();
+        List<Object[]> rows = new ArrayList<>(options.users());
+        for (long userId = 1; userId <= options.users(); userId++) {
+            long cents = random.nextLong(20_001);
+            balances.put(userId, cents);
+            rows.add(new Object[]{userId, Money.fromCents(cents)});
+        }
+        context.getBean(JdbcTemplate.class)
+                .batchUpdate("INSERT INTO wallets (user_id, balance, updated_at) VALUES (?, ?, CURRENT_TIMESTAMP)", rows);
+        return new Seed(itemIds, stockByItem, priceCentsByItem, balances);
+    }
+
+    /**
+     * Submit all attempts, at most --concurrency at a time. Keyed purchases go out as a burst
+     * of identical calls on random nodes, like a client retrying against a load balancer.
+     */
+    private void drive(Seed seed, Outcomes outcomes) throws InterruptedException {
+        SplittableRandom random = new SplittableRandom(options.seed() + 1);
+        Semaphore permits = new Semaphore(options.concurrency());
+        int submitted = 0;
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (submitted < options.attempts()) {
+                long userId = 1 + random.nextInt(options.users());
+                long itemId = seed.itemIds().get(random.nextInt(seed.itemIds().size()));
+                boolean keyed = random.nextDouble() < options.idempotentRatio();
+                String key = keyed ? "stress-" + Long.toHexString(random.nextLong()) : null;
+                int copies = keyed ? Math.min(options.duplicateBurst(), options.attempts() - submitted) : 1;
+                for (int i = 0; i < copies; i++) {
+                    Node node = nodes.get(random.nextInt(nodes.size()));
+                    permits.acquire();
+                    executor.submit(() -> {
+                        try {
+                            attempt(node, userId, itemId, key, outcomes);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                    submitted++;
+                }
+            }
+        }
+    }
+
+    private static void attempt(Node node, long userId, long itemId, String key, Outcomes outcomes) {
+        try {
+            String orderNo = node.flashSaleService().attemptPurchase(userId, itemId, key);
+            outcomes.successes.increment();
+            outcomes.orderUsers.put(orderNo, userId);
+            if (key != null) {
+                String first = outcomes.orderByIdempotencyKey.putIfAbsent(key, orderNo);
+                if (first != null && !first.equals(orderNo)) {
+                    outcomes.idempotencyMismatches.increment();
+                }
+            }
+        } catch (PurchaseRejectedException e) {
+            outcomes.rejections.computeIfAbsent(e.getReason().name(), reason -> new LongAdder()).increment();
+        } catch (BusinessException e) {
+            outcomes.rejections.computeIfAbsent("code " + e.getCode(), reason -> new LongAdder()).increment();
+        } catch (RuntimeException e) {
+            outcomes.errors.increment();
+            synchronized (outcomes.errorSamples) {
+                if (outcomes.errorSamples.size() < MAX_ERRORS_SHOWN) {
+                    outcomes.errorSamples.add(e.toString());
+                }
+            }
+        }
+    }
+
+    private boolean awaitPersistence() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            if (nodes.stream().allMatch(node -> node.lagTracker().inFlight() == 0)) {
+                return true;
+            }
+            Thread.sleep(100);
+        }
+        System.out.println("FAIL persistence did not drain within 5 minutes");
+        return false;
+    }
+
+    private void report(Outcomes outcomes, double seconds) {
+        System.out.printf("%d attempts in %.2fs: %.0f attempts/s%n", options.attempts(), seconds,
+                options.attempts() / seconds);
+        System.out.printf("  returned an order: %d (%d distinct orders)%n", outcomes.successes.sum(),
+                outcomes.orderUsers.size());
+        new TreeMap<>(outcomes.rejections).forEach((reason, count) ->
+                System.out.printf("  %-22s %d%n", reason, count.sum()));
+        if (outcomes.errors.sum() > 0) {
+            System.out.printf("  unexpected errors: %d, e.g. %s%n", outcomes.errors.sum(), outcomes.errorSamples);
+        }
+    }
+}
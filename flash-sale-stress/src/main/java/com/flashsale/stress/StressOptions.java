@@ -0,0 +1,59 @@
+package com.flashsale.stress;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Command line of the stress harness: --name value pairs, all optional.
+ */
+record StressOptions(
+        int nodes,
+        int users,
+        int items,
+        int stockPerItem,
+        int attempts,
+        int concurrency,
+        double idempotentRatio,
+        int duplicateBurst,
+        double failBeforeCommit,
+        double failAfterCommit,
+        long seed
+) {
+
+    static final String USAGE = """
+            Usage: java -jar stress.jar [--option value]...
+              --nodes             API application contexts sharing the stand-ins (default 2)
+              --users             users with a wallet (default 20000)
+              --items             flash sale items (default 20)
+              --stock             stock per item (default 400)
+              --attempts          attemptPurchase calls in total (default 300000)
+              --concurrency       calls in flight at once (default 1000)
+              --idempotent-ratio  share of purchases sent with an Idempotency-Key (default 0.3)
+              --duplicate-burst   concurrent copies of each keyed purchase, across nodes (default 3)
+              --fail-before       chance a persistOrder call fails before its transaction (default 0.05)
+              --fail-after        chance it fails after committing, so the retry must be a no-op (default 0.05)
+              --seed              random seed (default 1)
+            """;
+
+    static StressOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 >= args.length) {
+                throw new IllegalArgumentException("Expected --option value, got: " + args[i]);
+            }
+            values.put(args[i].substring(2), args[++i]);
+        }
+        return new StressOptions(
+                Integer.parseInt(values.getOrDefault("nodes", "2")),
+                Integer.parseInt(values.getOrDefault("users", "20000")),
+                Integer.parseInt(values.getOrDefault("items", "20")),
+                Integer.parseInt(values.getOrDefault("stock", "400")),
+                Integer.parseInt(values.getOrDefault("attempts", "300000")),
+                Integer.parseInt(values.getOrDefault("concurrency", "1000")),
+                Double.parseDouble(values.getOrDefault("idempotent-ratio", "0.3")),
+                Integer.parseInt(values.getOrDefault("duplicate-burst", "3")),
+                Double.parseDouble(values.getOrDefault("fail-before", "0.05")),
+                Double.parseDouble(values.getOrDefault("fail-after", "0.05")),
+                Long.parseLong(values.getOrDefault("seed", "1")));
+    }
+}
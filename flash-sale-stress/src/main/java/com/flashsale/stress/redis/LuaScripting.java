@@ -0,0 +1,322 @@
+package com.flashsale.stress.redis;
+
+import org.luaj.vm2.Globals;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+import org.luaj.vm2.lib.VarArgFunction;
+import org.luaj.vm2.lib.jse.JsePlatform;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * EVAL/EVALSHA and Redis Functions (FUNCTION LOAD, FCALL, FCALL_RO) for the stand-in, on luaj.
+ * Scripts run while the store's lock is held, so like in Redis nothing else executes until the
+ * script returns. The reply conversions follow Redis: nil bulk → false, integer → number,
+ * array → table, and back.
+ */
+final class LuaScripting {
+
+    private final RedisStore store;
+    private final Globals globals = JsePlatform.standardGlobals();
+    private final Map<String, LuaValue> scripts = new HashMap<>();
+    private final Map<String, Library> libraries = new HashMap<>();
+    private final Map<String, Function> functions = new HashMap<>();
+    /** Where redis.register_function puts what it is given; only set while a library loads. */
+    private Map<String, Function> registering;
+
+    private record Function(String library, LuaValue callback, boolean readOnly) {}
+
+    private record Library(String name, String code, Map<String, Function> functions) {}
+
+    LuaScripting(RedisStore store) {
+        this.store = store;
+        LuaTable redis = new LuaTable();
+        redis.set("call", new RedisCall(true));
+        redis.set("pcall", new RedisCall(false));
+        redis.set("error_reply", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("err"), args.arg1()});
+            }
+        });
+        redis.set("status_reply", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("ok"), args.arg1()});
+            }
+        });
+        redis.set("register_function", new RegisterFunction());
+        redis.set("log", new VarArgFunction() {
+            @Override
+            public Varargs invoke(Varargs args) {
+                return LuaValue.NONE;
+            }
+        });
+        globals.set("redis", redis);
+        if (globals.get("unpack").isnil()) {
+            globals.set("unpack", globals.get("table").get("unpack"));
+        }
+    }
+
+    Object eval(String body, List<String> numKeysKeysArgs) {
+        String sha = load(body);
+        return evalSha(sha, numKeysKeysArgs);
+    }
+
+    Object evalSha(String sha, List<String> numKeysKeysArgs) {
+        LuaValue script = scripts.get(sha.toLowerCase());
+        if (script == null) {
+            return new RedisStore.Error("NOSCRIPT No matching script. Please use EVAL.");
+        }
+        int numKeys = Integer.parseInt(numKeysKeysArgs.get(0));
+        globals.set("KEYS", table(numKeysKeysArgs.subList(1, 1 + numKeys)));
+        globals.set("ARGV", table(numKeysKeysArgs.subList(1 + numKeys, numKeysKeysArgs.size())));
+        try {
+            return toReply(script.call());
+        } catch (LuaError e) {
+            return new RedisStore.Error("ERR Error running script (call to f_" + sha + "): " + e.getMessage());
+        }
+    }
+
+    String load(String body) {
+        String sha = sha1(body);
+        scripts.computeIfAbsent(sha, key -> globals.load(body, "@user_script"));
+        return sha;
+    }
+
+    boolean exists(String sha) {
+        return scripts.containsKey(sha.toLowerCase());
+    }
+
+    void flush() {
+        scripts.clear();
+    }
+
+    /**
+     * FUNCTION LOAD [REPLACE]: runs the library body, which may only register functions, and
+     * swaps the library in only if it loaded cleanly.
+     */
+    Object loadLibrary(String code, boolean replace) {
+        if (!code.startsWith("#!lua name=")) {
+            return new RedisStore.Error("ERR Missing library metadata");
+        }
+        int headerEnd = code.indexOf('\n');
+        String name = (headerEnd < 0 ? code : code.substring(0, headerEnd)).substring("#!lua name=".length()).trim();
+        Library existing = libraries.get(name);
+        if (existing != null && !replace) {
+            return new RedisStore.Error("ERR Library '" + name + "' already exists");
+        }
+        // Keep the line numbers of error messages: blank out the header instead of cutting it
+        String body = headerEnd < 0 ? "" : code.substring(headerEnd);
+        Map<String, Function> registered = new HashMap<>();
+        registering = registered;
+        try {
+            globals.load(body, "@user_function").call();
+        } catch (LuaError e) {
+            return new RedisStore.Error("ERR Error compiling function: " + e.getMessage());
+        } finally {
+            registering = null;
+        }
+        if (registered.isEmpty()) {
+            return new RedisStore.Error("ERR No functions registered");
+        }
+        for (String function : registered.keySet()) {
+            Function other = functions.get(function);
+            if (other != null && !other.library().equals(name)) {
+                return new RedisStore.Error("ERR Function " + function + " already exists");
+            }
+        }
+        if (existing != null) {
+            existing.functions().keySet().forEach(functions::remove);
+        }
+        Map<String, Function> bound = new HashMap<>();
+        registered.forEach((function, f) -> bound.put(function, new Function(name, f.callback(), f.readOnly())));
+        functions.putAll(bound);
+        libraries.put(name, new Library(name, code, bound));
+        return name;
+    }
+
+    /**
+     * FCALL / FCALL_RO with numkeys, keys..., args....
+     */
+    Object fcall(String function, List<String> numKeysKeysArgs, boolean readOnly) {
+        Function f = functions.get(function);
+        if (f == null) {
+            return new RedisStore.Error("ERR Function not found");
+        }
+        if (readOnly && !f.readOnly()) {
+            return new RedisStore.Error("ERR Can not execute a script with write flag using *_ro command.");
+        }
+        int numKeys = Integer.parseInt(numKeysKeysArgs.get(0));
+        try {
+            return toReply(f.callback().call(table(numKeysKeysArgs.subList(1, 1 + numKeys)),
+                    table(numKeysKeysArgs.subList(1 + numKeys, numKeysKeysArgs.size()))));
+        } catch (LuaError e) {
+            return new RedisStore.Error("ERR " + e.getMessage());
+        }
+    }
+
+    /**
+     * FUNCTION LIST: library name, engine and function names (no flags or code).
+     */
+    List<Object> listLibraries() {
+        List<Object> list = new ArrayList<>();
+        for (Library library : libraries.values()) {
+            List<Object> names = new ArrayList<>();
+            for (String function : library.functions().keySet()) {
+                names.add(List.of("name", function));
+            }
+            list.add(List.of("library_name", library.name(), "engine", "LUA", "functions", names));
+        }
+        return list;
+    }
+
+    boolean deleteLibrary(String name) {
+        Library library = libraries.remove(name);
+        if (library == null) {
+            return false;
+        }
+        library.functions().keySet().forEach(functions::remove);
+        return true;
+    }
+
+    void flushLibraries() {
+        libraries.clear();
+        functions.clear();
+    }
+
+    /**
+     * redis.register_function(name, callback) or redis.register_function{function_name=...,
+     * callback=..., flags={...}}.
+     */
+    private final class RegisterFunction extends VarArgFunction {
+
+        @Override
+        public Varargs invoke(Varargs args) {
+            if (registering == null) {
+                throw new LuaError("redis.register_function can only be called on FUNCTION LOAD command");
+            }
+            LuaValue name;
+            LuaValue callback;
+            boolean readOnly = false;
+            if (args.arg1().istable()) {
+                LuaTable spec = args.checktable(1);
+                name = spec.get("function_name");
+                callback = spec.get("callback");
+                LuaValue flags = spec.get("flags");
+                for (int i = 1; flags.istable() && !flags.get(i).isnil(); i++) {
+                    readOnly |= "no-writes".equals(flags.get(i).tojstring());
+                }
+            } else {
+                name = args.arg1();
+                callback = args.arg(2);
+            }
+            if (!name.isstring() || !callback.isfunction()) {
+                throw new LuaError("wrong arguments to redis.register_function");
+            }
+            if (registering.put(name.tojstring(), new Function(null, callback, readOnly)) != null) {
+                throw new LuaError("Function already exists in the library");
+            }
+            return LuaValue.NONE;
+        }
+    }
+
+    private final class RedisCall extends VarArgFunction {
+
+        private final boolean raise;
+
+        RedisCall(boolean raise) {
+            this.raise = raise;
+        }
+
+        @Override
+        public Varargs invoke(Varargs args) {
+            List<String> command = new ArrayList<>(args.narg());
+            for (int i = 1; i <= args.narg(); i++) {
+                command.add(args.arg(i).tojstring());
+            }
+            Object reply = store.execute(command);
+            if (reply instanceof RedisStore.Error error && raise) {
+                throw new LuaError(error.message());
+            }
+            return toLua(reply);
+        }
+    }
+
+    private static LuaTable table(List<String> values) {
+        LuaTable table = new LuaTable();
+        for (int i = 0; i < values.size(); i++) {
+            table.set(i + 1, LuaValue.valueOf(values.get(i)));
+        }
+        return table;
+    }
+
+    private static LuaValue toLua(Object reply) {
+        return switch (reply) {
+            case null -> LuaValue.FALSE;
+            case String s -> LuaValue.valueOf(s);
+            case Long l -> LuaValue.valueOf(l.doubleValue());
+            case RedisStore.Status status -> LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("ok"),
+                    LuaValue.valueOf(status.message())});
+            case RedisStore.Error error -> LuaValue.tableOf(new LuaValue[]{LuaValue.valueOf("err"),
+                    LuaValue.valueOf(error.message())});
+            case List<?> list -> {
+                LuaTable table = new LuaTable();
+                for (int i = 0; i < list.size(); i++) {
+                    table.set(i + 1, toLua(list.get(i)));
+                }
+                yield table;
+            }
+            default -> throw new IllegalStateException("Unexpected reply " + reply);
+        };
+    }
+
+    private static Object toReply(LuaValue value) {
+        if (value.isnil() || (value.isboolean() && !value.toboolean())) {
+            return null;
+        }
+        if (value.isboolean()) {
+            return 1L;
+        }
+        if (value.type() == LuaValue.TNUMBER) {
+            return (long) value.todouble();
+        }
+        if (value.isstring()) {
+            return value.tojstring();
+        }
+        if (value.istable()) {
+            LuaValue err = value.get("err");
+            if (err.isstring()) {
+                return new RedisStore.Error(err.tojstring());
+            }
+            LuaValue ok = value.get("ok");
+            if (ok.isstring()) {
+                return new RedisStore.Status(ok.tojstring());
+            }
+            List<Object> items = new ArrayList<>();
+            for (int i = 1; !value.get(i).isnil(); i++) {
+                items.add(toReply(value.get(i)));
+            }
+            return items;
+        }
+        return null;
+    }
+
+    private static String sha1(String body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(body.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
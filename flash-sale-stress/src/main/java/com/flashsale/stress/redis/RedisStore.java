@@ -0,0 +1,584 @@
+package com.flashsale.stress.redis;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * The keyspace of the Redis stand-in and the commands the flash-sale code uses on it.
+ * <p>
+ * Like Redis, it executes one command (or one MULTI block, or one script) at a time: callers
+ * hold {@link #lock()} around {@link #execute}. Expired keys are dropped when touched.
+ * Values are strings; replies are String (bulk), Long (integer), null (nil), List (array),
+ * {@link Status} or {@link Error}.
+ */
+public final class RedisStore {
+
+    public record Status(String message) {}
+
+    public record Error(String message) {}
+
+    static final Status OK = new Status("OK");
+
+    private static final class Entry {
+        Object value;
+        long expiresAtMillis;
+
+        Entry(Object value) {
+            this.value = value;
+        }
+    }
+
+    private static final class SortedSet {
+        final Map<String, Double> scores = new HashMap<>();
+        final NavigableSet<Map.Entry<Double, String>> ordered = new TreeSet<>(
+                Map.Entry.<Double, String>comparingByKey().thenComparing(Map.Entry.comparingByValue()));
+
+        boolean add(String member, double score) {
+            Double previous = scores.put(member, score);
+            if (previous != null) {
+                ordered.remove(Map.entry(previous, member));
+            }
+            ordered.add(Map.entry(score, member));
+            return previous == null;
+        }
+
+        boolean remove(String member) {
+            Double previous = scores.remove(member);
+            if (previous == null) {
+                return false;
+            }
+            ordered.remove(Map.entry(previous, member));
+            return true;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Entry> keys = new HashMap<>();
+    private final LuaScripting scripting = new LuaScripting(this);
+
+    public ReentrantLock lock() {
+        return lock;
+    }
+
+    /**
+     * Run one command; the caller holds the lock. Unknown commands and bad arguments are
+     * returned as {@link Error}, like Redis does.
+     */
+    public Object execute(List<String> command) {
+        try {
+            return dispatch(command.get(0).toUpperCase(Locale.ROOT), command);
+        } catch (WrongTypeException e) {
+            return new Error("WRONGTYPE Operation against a key holding the wrong kind of value");
+        } catch (NumberFormatException e) {
+            return new Error("ERR value is not an integer or out of range");
+        } catch (IndexOutOfBoundsException e) {
+            return new Error("ERR wrong number of arguments for '" + command.get(0).toLowerCase(Locale.ROOT) + "' command");
+        }
+    }
+
+    private Object dispatch(String name, List<String> c) {
+        return switch (name) {
+            case "PING" -> c.size() > 1 ? c.get(1) : new Status("PONG");
+            case "ECHO" -> c.get(1);
+            case "SELECT", "CLIENT", "AUTH", "READONLY" -> OK;
+            case "INFO" -> "# Server\r\nredis_version:7.2.0-standin\r\n";
+            case "COMMAND" -> List.of();
+            case "DBSIZE" -> (long) keys.size();
+            case "FLUSHALL", "FLUSHDB" -> {
+                keys.clear();
+                yield OK;
+            }
+
+            case "DEL", "UNLINK" -> {
+                long removed = 0;
+                for (String key : c.subList(1, c.size())) {
+                    if (live(key) != null) {
+                        keys.remove(key);
+                        removed++;
+                    }
+                }
+                yield removed;
+            }
+            case "EXISTS" -> {
+                long found = 0;
+                for (String key : c.subList(1, c.size())) {
+                    if (live(key) != null) {
+                        found++;
+                    }
+                }
+                yield found;
+            }
+            case "TYPE" -> new Status(typeOf(live(c.get(1))));
+            case "SCAN" -> scan(c);
+            case "EXPIRE" -> expireAt(c.get(1), System.currentTimeMillis() + Long.parseLong(c.get(2)) * 1000);
+            case "PEXPIRE" -> expireAt(c.get(1), System.currentTimeMillis() + Long.parseLong(c.get(2)));
+            case "EXPIREAT" -> expireAt(c.get(1), Long.parseLong(c.get(2)) * 1000);
+            case "PEXPIREAT" -> expireAt(c.get(1), Long.parseLong(c.get(2)));
+            case "PERSIST" -> {
+                Entry entry = live(c.get(1));
+                if (entry == null || entry.expiresAtMillis == 0) {
+                    yield 0L;
+                }
+                entry.expiresAtMillis = 0;
+                yield 1L;
+            }
+            case "TTL", "PTTL" -> {
+                Entry entry = live(c.get(1));
+                if (entry == null) {
+                    yield -2L;
+                }
+                if (entry.expiresAtMillis == 0) {
+                    yield -1L;
+                }
+                long millis = entry.expiresAtMillis - System.currentTimeMillis();
+                yield name.equals("TTL") ? (millis + 999) / 1000 : millis;
+            }
+
+            case "GET" -> string(c.get(1));
+            case "MGET" -> {
+                List<Object> values = new ArrayList<>(c.size() - 1);
+                for (String key : c.subList(1, c.size())) {
+                    Entry entry = live(key);
+                    values.add(entry != null && entry.value instanceof String s ? s : null);
+                }
+                yield values;
+            }
+            case "SET" -> set(c);
+            case "SETNX" -> {
+                if (live(c.get(1)) != null) {
+                    yield 0L;
+                }
+                put(c.get(1), c.get(2), 0);
+                yield 1L;
+            }
+            case "SETEX" -> put(c.get(1), c.get(3), System.currentTimeMillis() + Long.parseLong(c.get(2)) * 1000);
+            case "PSETEX" -> put(c.get(1), c.get(3), System.currentTimeMillis() + Long.parseLong(c.get(2)));
+            case "MSET" -> {
+                for (int i = 1; i + 1 < c.size(); i += 2) {
+                    put(c.get(i), c.get(i + 1), 0);
+                }
+                yield OK;
+            }
+            case "INCR" -> incrBy(c.get(1), 1);
+            case "DECR" -> incrBy(c.get(1), -1);
+            case "INCRBY" -> incrBy(c.get(1), Long.parseLong(c.get(2)));
+            case "DECRBY" -> incrBy(c.get(1), -Long.parseLong(c.get(2)));
+
+            case "HSET", "HMSET" -> {
+                Map<String, String> hash = hash(c.get(1), true);
+                long added = 0;
+                for (int i = 2; i + 1 < c.size(); i += 2) {
+                    if (hash.put(c.get(i), c.get(i + 1)) == null) {
+                        added++;
+                    }
+                }
+                yield name.equals("HSET") ? (Object) added : OK;
+            }
+            case "HGET" -> {
+                Map<String, String> hash = hash(c.get(1), false);
+                yield hash != null ? hash.get(c.get(2)) : null;
+            }
+            case "HMGET" -> {
+                Map<String, String> hash = hash(c.get(1), false);
+                List<Object> values = new ArrayList<>(c.size() - 2);
+                for (String field : c.subList(2, c.size())) {
+                    values.add(hash != null ? hash.get(field) : null);
+                }
+                yield values;
+            }
+            case "HGETALL" -> {
+                Map<String, String> hash = hash(c.get(1), false);
+                List<Object> values = new ArrayList<>();
+                if (hash != null) {
+                    hash.forEach((field, value) -> {
+                        values.add(field);
+                        values.add(value);
+                    });
+                }
+                yield values;
+            }
+            case "HDEL" -> {
+                Map<String, String> hash = hash(c.get(1), false);
+                long removed = 0;
+                if (hash != null) {
+                    for (String field : c.subList(2, c.size())) {
+                        if (hash.remove(field) != null) {
+                            removed++;
+                        }
+                    }
+                    dropIfEmpty(c.get(1), hash);
+                }
+                yield removed;
+            }
+            case "HEXISTS" -> {
+                Map<String, String> hash = hash(c.get(1), false);
+                yield hash != null && hash.containsKey(c.get(2)) ? 1L : 0L;
+            }
+            case "HLEN" -> {
+                Map<String, String> hash = hash(c.get(1), false);
+                yield hash != null ? (long) hash.size() : 0L;
+            }
+
+            case "SADD" -> {
+                Set<String> set = set(c.get(1), true);
+                long added = 0;
+                for (String member : c.subList(2, c.size())) {
+                    if (set.add(member)) {
+                        added++;
+                    }
+                }
+                yield added;
+            }
+            case "SREM" -> {
+                Set<String> set = set(c.get(1), false);
+                long removed = 0;
+                if (set != null) {
+                    for (String member : c.subList(2, c.size())) {
+                        if (set.remove(member)) {
+                            removed++;
+                        }
+                    }
+                    dropIfEmpty(c.get(1), set);
+                }
+                yield removed;
+            }
+            case "SMEMBERS" -> {
+                Set<String> set = set(c.get(1), false);
+                yield set != null ? new ArrayList<Object>(set) : List.of();
+            }
+            case "SISMEMBER" -> {
+                Set<String> set = set(c.get(1), false);
+                yield set != null && set.contains(c.get(2)) ? 1L : 0L;
+            }
+            case "SCARD" -> {
+                Set<String> set = set(c.get(1), false);
+                yield set != null ? (long) set.size() : 0L;
+            }
+
+            case "ZADD" -> {
+                SortedSet zset = zset(c.get(1), true);
+                long added = 0;
+                for (int i = 2; i + 1 < c.size(); i += 2) {
+                    if (zset.add(c.get(i + 1), parseScore(c.get(i)))) {
+                        added++;
+                    }
+                }
+                yield added;
+            }
+            case "ZREM" -> {
+                SortedSet zset = zset(c.get(1), false);
+                long removed = 0;
+                if (zset != null) {
+                    for (String member : c.subList(2, c.size())) {
+                        if (zset.remove(member)) {
+                            removed++;
+                        }
+                    }
+                    dropIfEmpty(c.get(1), zset.scores);
+                }
+                yield removed;
+            }
+            case "ZSCORE" -> {
+                SortedSet zset = zset(c.get(1), false);
+                Double score = zset != null ? zset.scores.get(c.get(2)) : null;
+                yield score != null ? formatScore(score) : null;
+            }
+            case "ZCARD" -> {
+                SortedSet zset = zset(c.get(1), false);
+                yield zset != null ? (long) zset.scores.size() : 0L;
+            }
+            case "ZRANGEBYSCORE" -> {
+                SortedSet zset = zset(c.get(1), false);
+                boolean withScores = c.subList(4, c.size()).stream().anyMatch("WITHSCORES"::equalsIgnoreCase);
+                List<Object> members = new ArrayList<>();
+                if (zset != null) {
+                    for (Map.Entry<Double, String> entry : inRange(zset, c.get(2), c.get(3))) {
+                        members.add(entry.getValue());
+                        if (withScores) {
+                            members.add(formatScore(entry.getKey()));
+                        }
+                    }
+                }
+                yield members;
+            }
+            case "ZREMRANGEBYSCORE" -> {
+                SortedSet zset = zset(c.get(1), false);
+                long removed = 0;
+                if (zset != null) {
+                    for (Map.Entry<Double, String> entry : inRange(zset, c.get(2), c.get(3))) {
+                        zset.remove(entry.getValue());
+                        removed++;
+                    }
+                    dropIfEmpty(c.get(1), zset.scores);
+                }
+                yield removed;
+            }
+
+            case "EVAL" -> scripting.eval(c.get(1), args(c, 2));
+            case "EVALSHA" -> scripting.evalSha(c.get(1), args(c, 2));
+            case "SCRIPT" -> switch (c.get(1).toUpperCase(Locale.ROOT)) {
+                case "LOAD" -> scripting.load(c.get(2));
+                case "EXISTS" -> {
+                    List<Object> found = new ArrayList<>();
+                    for (String sha : c.subList(2, c.size())) {
+                        found.add(scripting.exists(sha) ? 1L : 0L);
+                    }
+                    yield found;
+                }
+                case "FLUSH" -> {
+                    scripting.flush();
+                    yield OK;
+                }
+                default -> new Error("ERR unknown subcommand '" + c.get(1) + "'");
+            };
+            case "FCALL" -> scripting.fcall(c.get(1), args(c, 2), false);
+            case "FCALL_RO" -> scripting.fcall(c.get(1), args(c, 2), true);
+            case "FUNCTION" -> switch (c.get(1).toUpperCase(Locale.ROOT)) {
+                case "LOAD" -> c.size() > 3 && "REPLACE".equalsIgnoreCase(c.get(2))
+                        ? scripting.loadLibrary(c.get(3), true)
+                        : scripting.loadLibrary(c.get(2), false);
+                case "LIST" -> scripting.listLibraries();
+                case "DELETE" -> scripting.deleteLibrary(c.get(2)) ? OK : new Error("ERR Library not found");
+                case "FLUSH" -> {
+                    scripting.flushLibraries();
+                    yield OK;
+                }
+                default -> new Error("ERR unknown subcommand '" + c.get(1) + "'");
+            };
+
+            default -> new Error("ERR unknown command '" + c.get(0) + "'");
+        };
+    }
+
+    // ---- strings -------------------------------------------------------------------------
+
+    private Object set(List<String> c) {
+        String key = c.get(1);
+        long expiresAt = 0;
+        boolean nx = false;
+        boolean xx = false;
+        for (int i = 3; i < c.size(); i++) {
+            switch (c.get(i).toUpperCase(Locale.ROOT)) {
+                case "EX" -> expiresAt = System.currentTimeMillis() + Long.parseLong(c.get(++i)) * 1000;
+                case "PX" -> expiresAt = System.currentTimeMillis() + Long.parseLong(c.get(++i));
+                case "EXAT" -> expiresAt = Long.parseLong(c.get(++i)) * 1000;
+                case "PXAT" -> expiresAt = Long.parseLong(c.get(++i));
+                case "NX" -> nx = true;
+                case "XX" -> xx = true;
+                default -> {
+                    return new Error("ERR syntax error");
+                }
+            }
+        }
+        boolean exists = live(key) != null;
+        if ((nx && exists) || (xx && !exists)) {
+            return null;
+        }
+        return put(key, c.get(2), expiresAt);
+    }
+
+    private Object put(String key, String value, long expiresAtMillis) {
+        Entry entry = new Entry(value);
+        entry.expiresAtMillis = expiresAtMillis;
+        keys.put(key, entry);
+        return OK;
+    }
+
+    private String string(String key) {
+        Entry entry = live(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!(entry.value instanceof String value)) {
+            throw new WrongTypeException();
+        }
+        return value;
+    }
+
+    private Object incrBy(String key, long delta) {
+        Entry entry = live(key);
+        long current = 0;
+        if (entry != null) {
+            if (!(entry.value instanceof String value)) {
+                throw new WrongTypeException();
+            }
+            current = Long.parseLong(value);
+        }
+        long next = Math.addExact(current, delta);
+        if (entry == null) {
+            keys.put(key, new Entry(String.valueOf(next)));
+        } else {
+            entry.value = String.valueOf(next);
+        }
+        return next;
+    }
+
+    // ---- collections ---------------------------------------------------------------------
+
+    @SuppressWarnings("unchecked")
+    private Map<String, String> hash(String key, boolean create) {
+        return (Map<String, String>) container(key, create, Map.class, LinkedHashMap::new);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Set<String> set(String key, boolean create) {
+        return (Set<String>) container(key, create, Set.class, HashSet::new);
+    }
+
+    private SortedSet zset(String key, boolean create) {
+        return (SortedSet) container(key, create, SortedSet.class, SortedSet::new);
+    }
+
+    private Object container(String key, boolean create, Class<?> type, java.util.function.Supplier<Object> factory) {
+        Entry entry = live(key);
+        if (entry == null) {
+            if (!create) {
+                return null;
+            }
+            entry = new Entry(factory.get());
+            keys.put(key, entry);
+        }
+        if (!type.isInstance(entry.value)) {
+            throw new WrongTypeException();
+        }
+        return entry.value;
+    }
+
+    private void dropIfEmpty(String key, Object container) {
+        boolean empty = container instanceof Map<?, ?> map ? map.isEmpty() : ((Collection<?>) container).isEmpty();
+        if (empty) {
+            keys.remove(key);
+        }
+    }
+
+    private static List<Map.Entry<Double, String>> inRange(SortedSet zset, String min, String max) {
+        boolean minExclusive = min.startsWith("(");
+        boolean maxExclusive = max.startsWith("(");
+        double low = parseScore(minExclusive ? min.substring(1) : min);
+        double high = parseScore(maxExclusive ? max.substring(1) : max);
+        List<Map.Entry<Double, String>> matches = new ArrayList<>();
+        for (Map.Entry<Double, String> entry : zset.ordered) {
+            double score = entry.getKey();
+            if (score < low || (minExclusive && score == low)) {
+                continue;
+            }
+            if (score > high || (maxExclusive && score == high)) {
+                break;
+            }
+            matches.add(entry);
+        }
+        return matches;
+    }
+
+    private static double parseScore(String text) {
+        return switch (text.toLowerCase(Locale.ROOT)) {
+            case "-inf" -> Double.NEGATIVE_INFINITY;
+            case "+inf", "inf" -> Double.POSITIVE_INFINITY;
+            default -> Double.parseDouble(text);
+        };
+    }
+
+    private static String formatScore(double score) {
+        return score == Math.rint(score) && !Double.isInfinite(score) ? String.valueOf((long) score) : String.valueOf(score);
+    }
+
+    // ---- keyspace ------------------------------------------------------------------------
+
+    /**
+     * What WATCH compares at EXEC time; the caller holds the lock. Strings compare by value,
+     * other types only by type: the flash-sale code watches nothing but string keys.
+     */
+    public String watchValue(String key) {
+        Entry entry = live(key);
+        return entry != null && entry.value instanceof String value ? value : typeOf(entry);
+    }
+
+    private Entry live(String key) {
+        Entry entry = keys.get(key);
+        if (entry != null && entry.expiresAtMillis != 0 && entry.expiresAtMillis <= System.currentTimeMillis()) {
+            keys.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * SCAN answers every match in one step (next cursor 0); MATCH supports * and ?.
+     */
+    private Object scan(List<String> c) {
+        Pattern match = null;
+        for (int i = 2; i < c.size(); i++) {
+            switch (c.get(i).toUpperCase(Locale.ROOT)) {
+                case "MATCH" -> match = glob(c.get(++i));
+                case "COUNT", "TYPE" -> i++;
+                default -> {
+                    return new Error("ERR syntax error");
+                }
+            }
+        }
+        List<String> found = new ArrayList<>();
+        for (String key : List.copyOf(keys.keySet())) {
+            if (live(key) != null && (match == null || match.matcher(key).matches())) {
+                found.add(key);
+            }
+        }
+        return List.of("0", found);
+    }
+
+    private static Pattern glob(String pattern) {
+        StringBuilder regex = new StringBuilder();
+        for (char ch : pattern.toCharArray()) {
+            switch (ch) {
+                case '*' -> regex.append(".*");
+                case '?' -> regex.append('.');
+                default -> regex.append(Pattern.quote(String.valueOf(ch)));
+            }
+        }
+        return Pattern.compile(regex.toString(), Pattern.DOTALL);
+    }
+
+    private Object expireAt(String key, long expiresAtMillis) {
+        Entry entry = live(key);
+        if (entry == null) {
+            return 0L;
+        }
+        entry.expiresAtMillis = expiresAtMillis;
+        return 1L;
+    }
+
+    private static String typeOf(Entry entry) {
+        if (entry == null) {
+            return "none";
+        }
+        return switch (entry.value) {
+            case String s -> "string";
+            case Map<?, ?> m -> "hash";
+            case Set<?> s -> "set";
+            default -> "zset";
+        };
+    }
+
+    /**
+     * numkeys, keys..., args... of EVAL/EVALSHA/FCALL starting at index from.
+     */
+    private static List<String> args(List<String> c, int from) {
+        return c.subList(from, c.size());
+    }
+
+    private static final class WrongTypeException extends RuntimeException {
+        WrongTypeException() {
+            super(null, null, false, false);
+        }
+    }
+}
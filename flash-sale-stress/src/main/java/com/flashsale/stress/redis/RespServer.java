@@ -0,0 +1,356 @@
+package com.flashsale.stress.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+
+/**
+ * In-process Redis stand-in speaking RESP2 on a local port, so the application connects to it
+ * through its normal Lettuce configuration. Covers the commands of the flash-sale code,
+ * MULTI/EXEC, EVAL/EVALSHA and pub/sub (SUBSCRIBE, PUBLISH) — not persistence, replication or
+ * cluster. HELLO is answered as unknown, which makes Lettuce fall back to RESP2.
+ */
+public final class RespServer implements AutoCloseable {
+
+    private final RedisStore store = new RedisStore();
+    private final ServerSocket serverSocket;
+    private final Map<String, Set<Connection>> subscribers = new ConcurrentHashMap<>();
+    private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+    private volatile boolean running = true;
+
+    private RespServer(ServerSocket serverSocket) {
+        this.serverSocket = serverSocket;
+    }
+
+    /**
+     * Listen on a free loopback port.
+     */
+    public static RespServer start() throws IOException {
+        RespServer server = new RespServer(new ServerSocket(0, 512, InetAddress.getLoopbackAddress()));
+        Thread.ofPlatform().daemon().name("resp-accept").start(server::acceptLoop);
+        return server;
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Run a command directly against the keyspace (for seeding and checks).
+     */
+    public Object execute(String... command) {
+        store.lock().lock();
+        try {
+            return store.execute(List.of(command));
+        } finally {
+            store.lock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverSocket.close();
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Connection connection = new Connection(socket);
+                connections.add(connection);
+                Thread.ofVirtual().name("resp-conn").start(connection::serve);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Redis stand-in accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private long publish(String channel, String message) {
+        Set<Connection> receivers = subscribers.getOrDefault(channel, Set.of());
+        for (Connection receiver : receivers) {
+            receiver.push(List.of("message", channel, message));
+        }
+        return receivers.size();
+    }
+
+    private final class Connection {
+
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final Set<String> channels = new CopyOnWriteArraySet<>();
+        private List<List<String>> transaction;
+        // WATCHed key -> its value when watched (see RedisStore#watchValue)
+        private Map<String, String> watched;
+
+        Connection(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+        }
+
+        void serve() {
+            try {
+                while (running) {
+                    List<String> command = readCommand();
+                    Object reply = handle(command);
+                    synchronized (out) {
+                        if (reply != NO_REPLY) {
+                            writeReply(reply);
+                        }
+                        // Pipelined commands: answer the batch with one flush
+                        if (in.available() == 0) {
+                            out.flush();
+                        }
+                    }
+                }
+            } catch (EOFException e) {
+                // client closed
+            } catch (IOException e) {
+                // connection reset
+            } finally {
+                close();
+            }
+        }
+
+        void push(List<String> message) {
+            synchronized (out) {
+                try {
+                    writeReply(new ArrayList<Object>(message));
+                    out.flush();
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        void close() {
+            connections.remove(this);
+            for (String channel : channels) {
+                Set<Connection> receivers = subscribers.get(channel);
+                if (receivers != null) {
+                    receivers.remove(this);
+                }
+            }
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // closing anyway
+            }
+        }
+
+        private Object handle(List<String> command) {
+            String name = command.get(0).toUpperCase(Locale.ROOT);
+            switch (name) {
+                case "HELLO":
+                    return new RedisStore.Error("ERR unknown command 'HELLO'");
+                case "QUIT":
+                    return RedisStore.OK;
+                case "MULTI":
+                    transaction = new ArrayList<>();
+                    return RedisStore.OK;
+                case "DISCARD":
+                    transaction = null;
+                    watched = null;
+                    return RedisStore.OK;
+                case "WATCH":
+                    if (transaction != null) {
+                        return new RedisStore.Error("ERR WATCH inside MULTI is not allowed");
+                    }
+                    if (watched == null) {
+                        watched = new HashMap<>();
+                    }
+                    store.lock().lock();
+                    try {
+                        for (String key : command.subList(1, command.size())) {
+                            watched.putIfAbsent(key, store.watchValue(key));
+                        }
+                    } finally {
+                        store.lock().unlock();
+                    }
+                    return RedisStore.OK;
+                case "UNWATCH":
+                    watched = null;
+                    return RedisStore.OK;
+                case "EXEC":
+                    return exec();
+                case "PUBLISH":
+                    return publish(command.get(1), command.get(2));
+                case "SUBSCRIBE":
+                    for (String channel : command.subList(1, command.size())) {
+                        channels.add(channel);
+                        subscribers.computeIfAbsent(channel, key -> new CopyOnWriteArraySet<>()).add(this);
+                        writeQuietly(List.of("subscribe", channel, (long) channels.size()));
+                    }
+                    return NO_REPLY;
+                case "UNSUBSCRIBE":
+                    List<String> leaving = command.size() > 1 ? command.subList(1, command.size()) : List.copyOf(channels);
+                    for (String channel : leaving) {
+                        channels.remove(channel);
+                        Set<Connection> receivers = subscribers.get(channel);
+                        if (receivers != null) {
+                            receivers.remove(this);
+                        }
+                        writeQuietly(List.of("unsubscribe", channel, (long) channels.size()));
+                    }
+                    return NO_REPLY;
+                case "PSUBSCRIBE", "PUNSUBSCRIBE":
+                    for (String pattern : command.subList(1, command.size())) {
+                        writeQuietly(List.of(name.toLowerCase(Locale.ROOT), pattern, (long) channels.size()));
+                    }
+                    return NO_REPLY;
+                default:
+                    if (transaction != null) {
+                        transaction.add(command);
+                        return new RedisStore.Status("QUEUED");
+                    }
+                    store.lock().lock();
+                    try {
+                        return store.execute(command);
+                    } finally {
+                        store.lock().unlock();
+                    }
+            }
+        }
+
+        private Object exec() {
+            if (transaction == null) {
+                return new RedisStore.Error("ERR EXEC without MULTI");
+            }
+            List<Object> replies = new ArrayList<>(transaction.size());
+            store.lock().lock();
+            try {
+                if (watched != null) {
+                    for (Map.Entry<String, String> key : watched.entrySet()) {
+                        if (!Objects.equals(key.getValue(), store.watchValue(key.getKey()))) {
+                            return ABORTED;
+                        }
+                    }
+                }
+                for (List<String> queued : transaction) {
+                    replies.add(store.execute(queued));
+                }
+            } finally {
+                store.lock().unlock();
+                transaction = null;
+                watched = null;
+            }
+            return replies;
+        }
+
+        private void writeQuietly(List<?> reply) {
+            synchronized (out) {
+                try {
+                    writeReply(new ArrayList<>(reply));
+                } catch (IOException e) {
+                    close();
+                }
+            }
+        }
+
+        // ---- RESP2 ---------------------------------------------------------------------
+
+        private List<String> readCommand() throws IOException {
+            int marker = in.read();
+            if (marker < 0) {
+                throw new EOFException();
+            }
+            if (marker != '*') {
+                throw new IOException("Inline commands are not supported");
+            }
+            int count = (int) readLong();
+            List<String> command = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                if (in.read() != '$') {
+                    throw new IOException("Expected bulk string");
+                }
+                int length = (int) readLong();
+                byte[] bytes = in.readNBytes(length);
+                if (bytes.length < length) {
+                    throw new EOFException();
+                }
+                in.skipNBytes(2);
+                command.add(new String(bytes, StandardCharsets.UTF_8));
+            }
+            return command;
+        }
+
+        private long readLong() throws IOException {
+            long value = 0;
+            boolean negative = false;
+            int b;
+            while ((b = in.read()) != '\r') {
+                if (b < 0) {
+                    throw new EOFException();
+                }
+                if (b == '-') {
+                    negative = true;
+                } else {
+                    value = value * 10 + (b - '0');
+                }
+            }
+            in.read();
+            return negative ? -value : value;
+        }
+
+        private void writeReply(Object reply) throws IOException {
+            switch (reply) {
+                case null -> out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                case Aborted aborted -> out.write("*-1\r\n".getBytes(StandardCharsets.US_ASCII));
+                case RedisStore.Status status -> writeLine('+', status.message());
+                case RedisStore.Error error -> writeLine('-', error.message());
+                case Long number -> writeLine(':', number.toString());
+                case String text -> {
+                    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                    writeLine('$', String.valueOf(bytes.length));
+                    out.write(bytes);
+                    out.write(CRLF);
+                }
+                case List<?> items -> {
+                    writeLine('*', String.valueOf(items.size()));
+                    for (Object item : items) {
+                        writeReply(item);
+                    }
+                }
+                default -> throw new IllegalStateException("Unexpected reply " + reply);
+            }
+        }
+
+        private void writeLine(char type, String text) throws IOException {
+            out.write(type);
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+            out.write(CRLF);
+        }
+    }
+
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final Object NO_REPLY = new Object();
+
+    /** EXEC's reply when a WATCHed key changed: the null array. */
+    private record Aborted() {}
+
+    private static final Aborted ABORTED = new Aborted();
+}
@@ -11,7 +11,10 @@ public class CacheRefreshScheduler {
 
     private final FlashSaleCacheService flashSaleCacheService;
 
-    @Scheduled(fixedRate = 30_000)
+    /**
+     * Cheap when nothing changed (id + watermark queries, TTL bump), so it can run every second.
+     */
+    @Scheduled(fixedDelayString = "${app.cache.refresh-interval-ms:1000}")
     public void refreshCache() {
         flashSaleCacheService.refreshCache();
     }
@@ -0,0 +1,53 @@
+package com.flashsale.worker;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Redis lease that picks one worker instance to run the jobs that must not run twice
+ * (stock warm-up, sale lifecycle). The holder renews it on every call; if it dies, another
+ * worker takes over once the lease expires.
+ */
+@Component
+public class LeaderLease {
+
+    static final String LEADER_KEY = "fs:worker:leader";
+
+    // Keep the lease if we hold it, otherwise take it if nobody does
+    private static final DefaultRedisScript<Long> ACQUIRE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 1 end return 0",
+            Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final long leaseMillis;
+    private volatile boolean leader;
+
+    public LeaderLease(
+            RedisTemplate<String, Object> redisTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${app.worker.leader-lease-ms:15000}") long leaseMillis
+    ) {
+        this.redisTemplate = redisTemplate;
+        this.leaseMillis = leaseMillis;
+        Gauge.builder("worker.leader", this, lease -> lease.leader ? 1 : 0).register(meterRegistry);
+    }
+
+    /**
+     * True if this instance holds (or just acquired) the lease.
+     */
+    public boolean holds() {
+        Long held = redisTemplate.execute(ACQUIRE_SCRIPT, List.of(LEADER_KEY),
+                instanceId, String.valueOf(leaseMillis));
+        leader = held != null && held == 1;
+        return leader;
+    }
+}
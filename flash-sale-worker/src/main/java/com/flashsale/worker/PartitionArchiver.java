@@ -0,0 +1,136 @@
+package com.flashsale.worker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Copies one partition to {archive-dir}/{table}/{table}-{partition}.csv.gz: a header row, then
+ * the rows with RFC 4180 quoting and NULL as \N (as LOAD DATA reads it back). Rows are streamed
+ * from MySQL, so a month of orders never sits in memory, and the file only appears under its
+ * final name once it is complete and synced to disk.
+ */
+@Slf4j
+@Component
+public class PartitionArchiver {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path archiveDir;
+
+    public PartitionArchiver(
+            JdbcTemplate jdbcTemplate,
+            @Value("${app.partitions.archive-dir:/var/lib/flash-sale/archive}") String archiveDir
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.archiveDir = Paths.get(archiveDir);
+    }
+
+    /**
+     * Write the partition's rows and return how many were written. Names must already be
+     * validated; they are part of the SQL.
+     */
+    public long archive(String table, String partition) throws IOException {
+        Path dir = Files.createDirectories(archiveDir.resolve(table));
+        Path target = dir.resolve(table + "-" + partition + ".csv.gz");
+        Path temp = dir.resolve(target.getFileName() + ".tmp");
+        long rows;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            try (GZIPOutputStream gzip = new GZIPOutputStream(Channels.newOutputStream(channel), 64 * 1024);
+                 Writer out = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), 64 * 1024)) {
+                rows = copy("SELECT * FROM `" + table + "` PARTITION (`" + partition + "`)", out);
+                out.flush();
+                gzip.finish();
+                channel.force(true);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        log.info("Archived {} rows of {} partition {} to {}", rows, table, partition, target);
+        return rows;
+    }
+
+    private long copy(String sql, Writer out) throws IOException {
+        try {
+            Long rows = jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                // Connector/J streams row by row only with this fetch size
+                statement.setFetchSize(Integer.MIN_VALUE);
+                return statement;
+            }, resultSet -> {
+                try {
+                    return writeRows(resultSet, out);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            return rows != null ? rows : 0;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static long writeRows(ResultSet resultSet, Writer out) throws SQLException, IOException {
+        ResultSetMetaData meta = resultSet.getMetaData();
+        int columns = meta.getColumnCount();
+        for (int i = 1; i <= columns; i++) {
+            if (i > 1) {
+                out.write(',');
+            }
+            writeField(meta.getColumnLabel(i), out);
+        }
+        out.write('\n');
+        long rows = 0;
+        while (resultSet.next()) {
+            for (int i = 1; i <= columns; i++) {
+                if (i > 1) {
+                    out.write(',');
+                }
+                String value = resultSet.getString(i);
+                if (value == null) {
+                    out.write("\\N");
+                } else {
+                    writeField(value, out);
+                }
+            }
+            out.write('\n');
+            rows++;
+        }
+        return rows;
+    }
+
+    private static void writeField(String value, Writer out) throws IOException {
+        boolean quote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0 || value.equals("\\N");
+        if (!quote) {
+            out.write(value);
+            return;
+        }
+        out.write('"');
+        out.write(value.replace("\"", "\"\""));
+        out.write('"');
+    }
+}
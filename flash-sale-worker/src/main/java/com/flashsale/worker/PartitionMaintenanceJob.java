@@ -0,0 +1,182 @@
+package com.flashsale.worker;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the monthly RANGE partitions of orders and wallet_transactions (see schema.sql) ahead
+ * of the calendar and trims them behind it. Only the leader worker runs it.
+ * <ul>
+ *   <li>Ahead: partitions for the current month and the next months-ahead months are split off
+ *       the catch-all pmax before any row falls in them, so the split moves no rows and rows
+ *       never pile up in pmax. The exception is the first split of a table that already has
+ *       rows, all in pmax: it starts at the oldest row's month and copies every row into the
+ *       monthly partitions, blocking writes to the table meanwhile. Do that once, off-peak.</li>
+ *   <li>Behind: partitions more than retention-months old are copied to a gzip CSV by
+ *       {@link PartitionArchiver}, and dropped only when the file holds as many rows as the
+ *       partition. Dropping a partition is a metadata change, unlike a DELETE of millions of rows.</li>
+ * </ul>
+ * Tables that aren't partitioned (created by an older schema.sql) are skipped with a warning.
+ * Months are UTC, the clock order numbers (and so order_day) are stamped with.
+ */
+@Slf4j
+@Component
+public class PartitionMaintenanceJob {
+
+    static final List<String> TABLES = List.of("orders", "wallet_transactions");
+    private static final Map<String, String> PARTITION_COLUMNS = Map.of(
+            "orders", "order_day",
+            "wallet_transactions", "created_at");
+
+    private static final String CATCH_ALL = "pmax";
+    private static final Pattern MONTHLY = Pattern.compile("p\\d{6}");
+    private static final DateTimeFormatter MONTH_NAME = DateTimeFormatter.ofPattern("'p'yyyyMM");
+    private static final DateTimeFormatter BOUND = DateTimeFormatter.ofPattern("yyyy-MM-'01'");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final PartitionArchiver archiver;
+    private final LeaderLease leaderLease;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    // Warn once per table, not every run
+    private final Set<String> unpartitioned = ConcurrentHashMap.newKeySet();
+
+    public PartitionMaintenanceJob(
+            JdbcTemplate jdbcTemplate,
+            PartitionArchiver archiver,
+            LeaderLease leaderLease,
+            @Value("${app.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${app.partitions.retention-months:12}") int retentionMonths
+    ) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.archiver = archiver;
+        this.leaderLease = leaderLease;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = retentionMonths;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void maintainOnStartup() {
+        maintain();
+    }
+
+    @Scheduled(fixedDelayString = "${app.partitions.check-ms:3600000}",
+            initialDelayString = "${app.partitions.check-ms:3600000}")
+    public void maintain() {
+        if (!leaderLease.holds()) {
+            return;
+        }
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (String table : TABLES) {
+            try {
+                maintain(table, current);
+            } catch (DataAccessException | IOException e) {
+                log.error("Partition maintenance of {} failed: {}", table, e.getMessage(), e);
+            }
+        }
+    }
+
+    private void maintain(String table, YearMonth current) throws IOException {
+        List<String> partitions = partitions(table);
+        if (!partitions.contains(CATCH_ALL)) {
+            if (unpartitioned.add(table)) {
+                log.warn("{} is not partitioned by month (no {} partition); skipping its maintenance",
+                        table, CATCH_ALL);
+            }
+            return;
+        }
+        TreeSet<YearMonth> months = new TreeSet<>();
+        for (String partition : partitions) {
+            if (MONTHLY.matcher(partition).matches()) {
+                months.add(YearMonth.parse(partition, MONTH_NAME));
+            }
+        }
+        addAhead(table, months, current);
+        if (retentionMonths > 0) {
+            archiveBehind(table, months, current.minusMonths(retentionMonths));
+        }
+    }
+
+    /**
+     * Split the missing months up to current + months-ahead off pmax in one statement. Months
+     * are only ever appended after the last one: range partitions must stay in order. The first
+     * split starts at the oldest row's month, so older rows don't all land in the current month.
+     */
+    private void addAhead(String table, TreeSet<YearMonth> months, YearMonth current) {
+        YearMonth from = months.isEmpty() ? oldestMonth(table).filter(current::isAfter).orElse(current)
+                : months.last().plusMonths(1);
+        YearMonth to = current.plusMonths(monthsAhead);
+        if (from.isAfter(to)) {
+            return;
+        }
+        Long moving = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM `" + table + "` PARTITION (`" + CATCH_ALL + "`)", Long.class);
+        if (moving != null && moving > 0) {
+            log.warn("Splitting {} partitions off {} copies its {} rows; writes to {} wait until it is done",
+                    table, CATCH_ALL, moving, table);
+        }
+        List<String> definitions = new ArrayList<>();
+        for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+            definitions.add("PARTITION `" + month.format(MONTH_NAME) + "` VALUES LESS THAN ('"
+                    + month.plusMonths(1).format(BOUND) + "')");
+            months.add(month);
+        }
+        definitions.add("PARTITION `" + CATCH_ALL + "` VALUES LESS THAN (MAXVALUE)");
+        jdbcTemplate.execute("ALTER TABLE `" + table + "` REORGANIZE PARTITION `" + CATCH_ALL
+                + "` INTO (" + String.join(", ", definitions) + ")");
+        log.info("Added {} partitions {} to {}", table, from.format(MONTH_NAME), to.format(MONTH_NAME));
+    }
+
+    /**
+     * Archive, then drop, monthly partitions before {@code cutoff}, oldest first. Stops at the
+     * first one whose count doesn't match; the next run archives it again.
+     */
+    private void archiveBehind(String table, TreeSet<YearMonth> months, YearMonth cutoff) throws IOException {
+        for (YearMonth month : months.headSet(cutoff)) {
+            String partition = month.format(MONTH_NAME);
+            long written = archiver.archive(table, partition);
+            Long count = jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM `" + table + "` PARTITION (`" + partition + "`)", Long.class);
+            if (count == null || count != written) {
+                log.error("Not dropping {} partition {}: archived {} rows, it now holds {}",
+                        table, partition, written, count);
+                return;
+            }
+            jdbcTemplate.execute("ALTER TABLE `" + table + "` DROP PARTITION `" + partition + "`");
+            log.info("Dropped {} partition {} ({} rows archived)", table, partition, written);
+        }
+    }
+
+    private Optional<YearMonth> oldestMonth(String table) {
+        String oldest = jdbcTemplate.queryForObject("SELECT DATE_FORMAT(MIN(`" + PARTITION_COLUMNS.get(table)
+                + "`), '%Y-%m') FROM `" + table + "` PARTITION (`" + CATCH_ALL + "`)", String.class);
+        return Optional.ofNullable(oldest).map(YearMonth::parse);
+    }
+
+    private List<String> partitions(String table) {
+        return jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ? AND PARTITION_NAME IS NOT NULL "
+                        + "ORDER BY PARTITION_ORDINAL_POSITION",
+                String.class, table);
+    }
+}
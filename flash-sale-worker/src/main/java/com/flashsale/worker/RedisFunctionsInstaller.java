@@ -0,0 +1,41 @@
+package com.flashsale.worker;
+
+import com.flashsale.common.exception.RedisUnavailableException;
+import com.flashsale.common.redis.RedisFunctions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the flashsale Functions library in Redis at this build's version: installed at startup,
+ * upgraded in place by deploying a worker with a higher LIBRARY_VERSION (FUNCTION LOAD REPLACE is
+ * atomic, so in-flight purchases see either the old or the new library), and re-checked
+ * periodically in case Redis was flushed or failed over to an empty replica.
+ * Every worker runs it; loading the same version twice is a no-op.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RedisFunctionsInstaller {
+
+    private final RedisFunctions redisFunctions;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void installOnStartup() {
+        install();
+    }
+
+    @Scheduled(fixedDelayString = "${app.redis.functions-check-ms:30000}",
+            initialDelayString = "${app.redis.functions-check-ms:30000}")
+    public void install() {
+        try {
+            redisFunctions.install();
+        } catch (DataAccessException | RedisUnavailableException e) {
+            log.warn("Could not install the {} library into Redis: {}", RedisFunctions.LIBRARY, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package com.flashsale.worker;
+
+import com.flashsale.common.redis.KeyPrefix;
+import com.flashsale.common.redis.RedisKeys;
+import com.flashsale.flashsale.entity.FlashSale;
+import com.flashsale.flashsale.entity.FlashSaleProduct;
+import com.flashsale.flashsale.entity.FlashSaleProductArchive;
+import com.flashsale.flashsale.repository.FlashSaleProductArchiveRepository;
+import com.flashsale.flashsale.repository.FlashSaleProductRepository;
+import com.flashsale.flashsale.repository.FlashSaleRepository;
+import com.flashsale.flashsale.service.FlashSaleCacheService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Drives each sale through its Redis lifecycle from flash_sale.start_time/end_time:
+ * <ul>
+ *   <li>WARM — lead time before start: seed its keys, so nothing is loaded at T+0.</li>
+ *   <li>LIVE — at start: re-arm (idempotent) and publish the catalog right away.</li>
+ *   <li>END — grace period after end (async persistence drains): archive the final stock
+ *       counters to MySQL and delete the sale's keys.</li>
+ * </ul>
+ * Due transitions live in the ZSET fs:lifecycle:due (score = due epoch millis), so Redis
+ * only holds state for sales that are upcoming or live. Members embed the boundary time
+ * ("warm:{saleId}:{startMillis}"), so editing a sale's times schedules fresh transitions
+ * and the old ones, whose boundary no longer matches the sale, are skipped when they come due.
+ * Only the leader worker plans and fires.
+ * <p>
+ * A claimed transition moves to fs:lifecycle:claimed under a lease until it has fired, so a
+ * leader that dies mid-tick doesn't lose it: the next claim puts expired leases back on the due
+ * set. A transition can therefore fire twice (a slow leader outliving its lease); all three are
+ * idempotent.
+ * <p>
+ * A failing transition is retried every 10s, up to {@value #MAX_ATTEMPTS} attempts (counted in
+ * fs:lifecycle:attempts), then parked in fs:lifecycle:dead and counted by lifecycle.transition.dead.
+ * Once the cause is fixed, ZADD it back to fs:lifecycle:due.
+ */
+@Slf4j
+@Component
+public class SaleLifecycleScheduler {
+
+    static final String DUE_KEY = "fs:lifecycle:due";
+    // Transitions already fired, scored by when they can be forgotten (sale end + grace)
+    static final String DONE_KEY = "fs:lifecycle:done";
+    // Transitions being fired, scored by when their claim lapses
+    static final String CLAIMED_KEY = "fs:lifecycle:claimed";
+    private static final int CLAIM_BATCH = 100;
+    private static final long RETRY_DELAY_MILLIS = 10_000;
+    private static final long CLAIM_LEASE_MILLIS = 30_000;
+    // Failures so far per transition, and transitions that used up MAX_ATTEMPTS (scored by when)
+    static final String ATTEMPTS_KEY = "fs:lifecycle:attempts";
+    static final String DEAD_KEY = "fs:lifecycle:dead";
+    static final int MAX_ATTEMPTS = 6;
+
+    // Schedule each (score, member) pair unless it already fired
+    private static final DefaultRedisScript<Long> SCHEDULE_SCRIPT = new DefaultRedisScript<>(
+            "local n = 0 " +
+            "for i = 1, #ARGV, 2 do " +
+            "  if not redis.call('ZSCORE', KEYS[2], ARGV[i + 1]) then " +
+            "    n = n + redis.call('ZADD', KEYS[1], 'NX', ARGV[i], ARGV[i + 1]) " +
+            "  end " +
+            "end " +
+            "return n",
+            Long.class);
+
+    // Re-queue claims that lapsed by ARGV[1] (unless they fired), then atomically move up to
+    // ARGV[2] transitions due by ARGV[1] to the claimed set, leased until ARGV[3]
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+            "local lapsed = redis.call('ZRANGEBYSCORE', KEYS[2], '-inf', ARGV[1]) " +
+            "for _, member in ipairs(lapsed) do " +
+            "  redis.call('ZREM', KEYS[2], member) " +
+            "  if not redis.call('ZSCORE', KEYS[3], member) then " +
+            "    redis.call('ZADD', KEYS[1], ARGV[1], member) " +
+            "  end " +
+            "end " +
+            "local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+            "for _, member in ipairs(due) do " +
+            "  redis.call('ZREM', KEYS[1], member) " +
+            "  redis.call('ZADD', KEYS[2], ARGV[3], member) " +
+            "end " +
+            "return due",
+            List.class);
+
+    enum Phase { WARM, LIVE, END }
+
+    private final FlashSaleRepository flashSaleRepository;
+    private final FlashSaleProductRepository flashSaleProductRepository;
+    private final FlashSaleProductArchiveRepository archiveRepository;
+    private final FlashSaleCacheService flashSaleCacheService;
+    private final StockWarmUpService stockWarmUpService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final LeaderLease leaderLease;
+    private final Counter dead;
+    private final long warmLeadMillis;
+    private final long endGraceMillis;
+
+    public SaleLifecycleScheduler(
+            FlashSaleRepository flashSaleRepository,
+            FlashSaleProductRepository flashSaleProductRepository,
+            FlashSaleProductArchiveRepository archiveRepository,
+            FlashSaleCacheService flashSaleCacheService,
+            StockWarmUpService stockWarmUpService,
+            RedisTemplate<String, Object> redisTemplate,
+            LeaderLease leaderLease,
+            MeterRegistry meterRegistry,
+            @Value("${app.lifecycle.warm-lead-ms:300000}") long warmLeadMillis,
+            @Value("${app.lifecycle.end-grace-ms:300000}") long endGraceMillis
+    ) {
+        this.flashSaleRepository = flashSaleRepository;
+        this.flashSaleProductRepository = flashSaleProductRepository;
+        this.archiveRepository = archiveRepository;
+        this.flashSaleCacheService = flashSaleCacheService;
+        this.stockWarmUpService = stockWarmUpService;
+        this.redisTemplate = redisTemplate;
+        this.leaderLease = leaderLease;
+        this.dead = Counter.builder("lifecycle.transition.dead").register(meterRegistry);
+        this.warmLeadMillis = warmLeadMillis;
+        this.endGraceMillis = endGraceMillis;
+    }
+
+    /**
+     * Schedule the transitions of every current and upcoming sale. Cheap and idempotent —
+     * transitions already due or fired are not added again.
+     */
+    @Scheduled(fixedDelayString = "${app.lifecycle.plan-interval-ms:60000}")
+    public void plan() {
+        if (!leaderLease.holds()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> args = new ArrayList<>();
+        List<FlashSale> sales = flashSaleRepository.findCurrentAndUpcoming(LocalDateTime.now(ZoneOffset.UTC));
+        for (FlashSale sale : sales) {
+            long startMillis = millis(sale.getStartTime());
+            long endMillis = millis(sale.getEndTime());
+            if (startMillis > now) {
+                addTransition(args, Phase.WARM, sale.getId(), startMillis, startMillis - warmLeadMillis);
+                addTransition(args, Phase.LIVE, sale.getId(), startMillis, startMillis);
+            }
+            addTransition(args, Phase.END, sale.getId(), endMillis, endMillis + endGraceMillis);
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        Long added = redisTemplate.execute(SCHEDULE_SCRIPT, List.of(DUE_KEY, DONE_KEY), args.toArray());
+        if (added != null && added > 0) {
+            log.info("Lifecycle: scheduled {} new transitions for {} sales", added, sales.size());
+        }
+    }
+
+    /**
+     * Fire whatever is due. A failed transition is put back and retried shortly (or parked, see
+     * {@link #failed}); a fired one is recorded as done before its claim is released.
+     */
+    @Scheduled(fixedDelayString = "${app.lifecycle.tick-ms:1000}")
+    @SuppressWarnings("unchecked")
+    public void tick() {
+        if (!leaderLease.holds()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<Object> due = redisTemplate.execute(CLAIM_SCRIPT, List.of(DUE_KEY, CLAIMED_KEY, DONE_KEY),
+                String.valueOf(now), String.valueOf(CLAIM_BATCH), String.valueOf(now + CLAIM_LEASE_MILLIS));
+        if (due == null || due.isEmpty()) {
+            return;
+        }
+
+        boolean catalogChanged = false;
+        for (Object raw : due) {
+            String member = raw.toString();
+            try {
+                catalogChanged |= fire(member);
+                redisTemplate.opsForHash().delete(ATTEMPTS_KEY, member);
+            } catch (Exception e) {
+                failed(member, now, e);
+            }
+            redisTemplate.opsForZSet().remove(CLAIMED_KEY, member);
+        }
+        if (catalogChanged) {
+            flashSaleCacheService.refreshCache();
+        }
+        // Forget fired transitions of sales that are over
+        redisTemplate.opsForZSet().removeRangeByScore(DONE_KEY, Double.NEGATIVE_INFINITY, now);
+    }
+
+    /**
+     * Re-queue the transition, or park it in the dead-letter set once it has failed MAX_ATTEMPTS
+     * times. Only the last failure is logged with its stack trace.
+     */
+    private void failed(String member, long now, Exception e) {
+        Long attempts = redisTemplate.opsForHash().increment(ATTEMPTS_KEY, member, 1);
+        if (attempts != null && attempts >= MAX_ATTEMPTS) {
+            redisTemplate.opsForZSet().add(DEAD_KEY, member, now);
+            redisTemplate.opsForHash().delete(ATTEMPTS_KEY, member);
+            dead.increment();
+            log.error("Lifecycle transition {} failed {} times; parked in {}: {}",
+                    member, attempts, DEAD_KEY, e.getMessage(), e);
+            return;
+        }
+        log.warn("Lifecycle transition {} failed (attempt {}/{}), retrying in {}ms: {}",
+                member, attempts, MAX_ATTEMPTS, RETRY_DELAY_MILLIS, e.getMessage());
+        redisTemplate.opsForZSet().add(DUE_KEY, member, now + RETRY_DELAY_MILLIS);
+    }
+
+    /**
+     * Returns true if the active catalog changed.
+     */
+    private boolean fire(String member) {
+        String[] parts = member.split(":");
+        Phase phase = Phase.valueOf(parts[0].toUpperCase());
+        long saleId = Long.parseLong(parts[1]);
+        long boundaryMillis = Long.parseLong(parts[2]);
+        Optional<FlashSale> sale = flashSaleRepository.findById(saleId);
+        // Scheduled for a start time the sale no longer has; its current one is scheduled too
+        Optional<FlashSale> starting = sale.filter(s -> s.getStatus() == 1 && millis(s.getStartTime()) == boundaryMillis);
+
+        boolean catalogChanged = switch (phase) {
+            case WARM -> {
+                starting.ifPresent(s -> stockWarmUpService.warmSales(List.of(s)));
+                yield false;
+            }
+            case LIVE -> {
+                starting.ifPresent(s -> stockWarmUpService.warmSales(List.of(s)));
+                yield starting.isPresent();
+            }
+            case END -> {
+                // Skip if the sale was extended or its end moved; its new END transition is scheduled
+                if (sale.isPresent() && (millis(sale.get().getEndTime()) != boundaryMillis
+                        || boundaryMillis > System.currentTimeMillis())) {
+                    yield false;
+                }
+                archiveAndReclaim(saleId);
+                yield true;
+            }
+        };
+
+        long forgetAt = sale.map(s -> millis(s.getEndTime())).orElse(0L) + endGraceMillis;
+        redisTemplate.opsForZSet().add(DONE_KEY, member, Math.max(forgetAt, System.currentTimeMillis()));
+        log.info("Lifecycle: {} fired", member);
+        return catalogChanged;
+    }
+
+    /**
+     * Record the final stock counters, then delete the sale's keys.
+     */
+    private void archiveAndReclaim(long saleId) {
+        List<FlashSaleProduct> products = flashSaleProductRepository.findByFlashSaleIdAndEnabledTrue(saleId);
+        if (products.isEmpty()) {
+            return;
+        }
+
+        List<String> stockKeys = products.stream().map(fsp -> RedisKeys.STOCK.name(fsp.getId())).toList();
+        List<Object> stocks = redisTemplate.opsForValue().multiGet(stockKeys);
+
+        List<FlashSaleProductArchive> archives = new ArrayList<>(products.size());
+        List<String> keys = new ArrayList<>(products.size() * (StockWarmUpService.SALE_KEYS.size() + 1));
+        for (int i = 0; i < products.size(); i++) {
+            FlashSaleProduct fsp = products.get(i);
+            Object stock = stocks != null ? stocks.get(i) : null;
+            archives.add(FlashSaleProductArchive.builder()
+                    .flashSaleProductId(fsp.getId())
+                    .flashSaleId(saleId)
+                    .redisStock(stock != null ? Integer.valueOf(stock.toString()) : null)
+                    .dbAvailable(fsp.getSaleAvailable())
+                    .build());
+            if (stock != null && Integer.parseInt(stock.toString()) != fsp.getSaleAvailable()) {
+                log.warn("Lifecycle: fspId={} ended with redis stock {} but sale_available {}",
+                        fsp.getId(), stock, fsp.getSaleAvailable());
+            }
+            for (KeyPrefix key : StockWarmUpService.SALE_KEYS) {
+                keys.add(key.name(fsp.getId()));
+            }
+            keys.add("fs:item:" + fsp.getId());
+        }
+
+        archiveRepository.saveAll(archives);
+        redisTemplate.delete(keys);
+        log.info("Lifecycle: sale {} archived and {} keys reclaimed", saleId, keys.size());
+    }
+
+    private static long millis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    private static void addTransition(List<String> args, Phase phase, long saleId, long boundaryMillis, long dueMillis) {
+        args.add(String.valueOf(dueMillis));
+        args.add(phase.name().toLowerCase() + ":" + saleId + ":" + boundaryMillis);
+    }
+}
@@ -0,0 +1,131 @@
+package com.flashsale.worker;
+
+import com.flashsale.common.datasource.ReadReplica;
+import com.flashsale.common.redis.KeyPrefix;
+import com.flashsale.common.redis.LongCodec;
+import com.flashsale.common.redis.RedisKeys;
+import com.flashsale.common.redis.TypedRedis;
+import com.flashsale.common.util.Money;
+import com.flashsale.flashsale.entity.FlashSale;
+import com.flashsale.flashsale.entity.FlashSaleProduct;
+import com.flashsale.flashsale.repository.FlashSaleProductRepository;
+import com.flashsale.flashsale.repository.FlashSaleRepository;
+import io.lettuce.core.RedisFuture;
+import io.lettuce.core.api.async.RedisAsyncCommands;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Seeds the Redis keys the purchase script reads (fs:fsp:{id}:start/end/price/stock).
+ * Runs in the worker only, on the leader, so scaling the API never writes to Redis or delays readiness.
+ * <p>
+ * Idempotent: start/end/price are overwritten with what MySQL says, but stock is only set if
+ * absent — live stock in Redis is ahead of MySQL while async persistence catches up.
+ * Every key expires a while after its sale ends, even if the lifecycle scheduler never reclaims it.
+ * Sales and products are read from the replica when there is one in sync (see ReadReplica).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockWarmUpService {
+
+    private static final int BATCH_SIZE = 500;
+    private static final long KEY_GRACE_MILLIS = 3600_000;
+    static final List<KeyPrefix> SALE_KEYS = List.of(RedisKeys.STOCK, RedisKeys.START, RedisKeys.END, RedisKeys.PRICE);
+
+    private final FlashSaleRepository flashSaleRepository;
+    private final FlashSaleProductRepository flashSaleProductRepository;
+    private final TypedRedis typedRedis;
+    private final LeaderLease leaderLease;
+
+    /**
+     * Arm everything current and upcoming once at startup; from then on the lifecycle
+     * scheduler warms each sale ahead of its start.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (!leaderLease.holds()) {
+            log.info("Warm-up skipped: another worker holds {}", LeaderLease.LEADER_KEY);
+            return;
+        }
+        warmSales(ReadReplica.read(() -> flashSaleRepository.findCurrentAndUpcoming(LocalDateTime.now())));
+    }
+
+    /**
+     * Seed the keys of every enabled product in the given sales. Returns the number of products written.
+     */
+    public int warmSales(List<FlashSale> sales) {
+        if (sales.isEmpty()) {
+            log.info("Warm-up: no flash sales to warm");
+            return 0;
+        }
+
+        long startedAt = System.currentTimeMillis();
+        Map<Long, FlashSale> salesById = sales.stream()
+                .collect(Collectors.toMap(FlashSale::getId, Function.identity()));
+        List<FlashSaleProduct> products = ReadReplica.read(() ->
+                flashSaleProductRepository.findByFlashSaleIdInAndEnabledTrue(salesById.keySet()));
+        long loadedAt = System.currentTimeMillis();
+
+        int seeded = 0;
+        for (int from = 0; from < products.size(); from += BATCH_SIZE) {
+            List<FlashSaleProduct> batch = products.subList(from, Math.min(from + BATCH_SIZE, products.size()));
+            seeded += writeBatch(batch, salesById);
+            log.debug("Warm-up progress: {}/{} flash sale products", from + batch.size(), products.size());
+        }
+
+        log.info("Warm-up complete: {} flash sale products in {} sales | stock seeded={} kept={} | db={}ms redis={}ms",
+                products.size(), sales.size(), seeded, products.size() - seeded,
+                loadedAt - startedAt, System.currentTimeMillis() - loadedAt);
+        return products.size();
+    }
+
+    /**
+     * One pipelined batch on the shared connection: SETNX stock (replies counted), SET the sale
+     * window and price, and their expiry. Commands on one connection run in order, so each
+     * key's PEXPIREAT follows its write. Returns how many stock keys were newly set.
+     */
+    private int writeBatch(List<FlashSaleProduct> batch, Map<Long, FlashSale> salesById) {
+        RedisAsyncCommands<byte[], byte[]> async = typedRedis.async();
+        List<RedisFuture<Boolean>> stockResults = new ArrayList<>(batch.size());
+        List<RedisFuture<?>> writes = new ArrayList<>(batch.size() * 7);
+
+        for (FlashSaleProduct fsp : batch) {
+            FlashSale sale = salesById.get(fsp.getFlashSaleId());
+            long startMillis = sale.getStartTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+            long endMillis = sale.getEndTime().toInstant(ZoneOffset.UTC).toEpochMilli();
+            long expireAtMillis = endMillis + KEY_GRACE_MILLIS;
+
+            stockResults.add(async.setnx(RedisKeys.STOCK.key(fsp.getId()), LongCodec.encode(fsp.getSaleAvailable())));
+            writes.add(async.set(RedisKeys.START.key(fsp.getId()), LongCodec.encode(startMillis)));
+            writes.add(async.set(RedisKeys.END.key(fsp.getId()), LongCodec.encode(endMillis)));
+            // Sale price in cents (integer) for the Lua script
+            writes.add(async.set(RedisKeys.PRICE.key(fsp.getId()), LongCodec.encode(Money.toCents(fsp.getSalePrice()))));
+            for (KeyPrefix key : SALE_KEYS) {
+                writes.add(async.pexpireat(key.key(fsp.getId()), expireAtMillis));
+            }
+        }
+
+        for (RedisFuture<?> write : writes) {
+            typedRedis.await(write);
+        }
+        int seeded = 0;
+        for (RedisFuture<Boolean> set : stockResults) {
+            if (Boolean.TRUE.equals(typedRedis.await(set))) {
+                seeded++;
+            }
+        }
+        return seeded;
+    }
+}
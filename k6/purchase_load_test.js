@@ -27,10 +27,16 @@ export const options = {
 export function setup() {
   console.log("⏳ [SETUP] Initialing Flash Sale Test Data...");
 
-  // Step A: Get all flash sale product items
-  const itemsRes = http.get(`${BASE_URL}/api/v1/flash-sale/items`);
-  let items = JSON.parse(itemsRes.body).data;
-  if (!items || items.length === 0) throw new Error("No items found or no flash safe active");
+  // Step A: Get all flash sale product items (follow the cursor through every page)
+  let items = [];
+  let cursor = null;
+  do {
+    const query = cursor ? `?size=200&cursor=${cursor}` : '?size=200';
+    const page = JSON.parse(http.get(`${BASE_URL}/api/v1/flash-sale/items${query}`).body).data;
+    items = items.concat(page.items);
+    cursor = page.nextCursor;
+  } while (cursor);
+  if (items.length === 0) throw new Error("No items found or no flash safe active");
   
   // Push all flashSaleProductId to array
   const productIds = items.map(item => item.flashSaleProductId);
@@ -79,6 +85,7 @@ export default function (data) {
     headers: {
       'Content-Type': 'application/json',
       'Authorization': `Bearer ${randomToken}`,
+      'Idempotency-Key': `k6-${__VU}-${__ITER}`,
     },
   };
 
@@ -0,0 +1,10 @@
+-- Runs once, when the mysql-replica volume is first initialised: replicate everything from
+-- the primary by GTID auto-positioning (schema and data included) and keep doing so.
+CHANGE REPLICATION SOURCE TO
+    SOURCE_HOST = 'mysql',
+    SOURCE_PORT = 3306,
+    SOURCE_USER = 'root',
+    SOURCE_PASSWORD = 'root123',
+    SOURCE_AUTO_POSITION = 1,
+    GET_SOURCE_PUBLIC_KEY = 1;
+START REPLICA;